@@ -0,0 +1,50 @@
+/*
+ * Copyright 2020 lorislab.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vn.com.acbs.digital.migration.toolkit.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+
+/**
+ * Runs the benchmarks and writes the results in the JSON format, by default to {@code target/jmh-results.json}.
+ * The JMH command line options are supported, for example {@code java -jar benchmarks.jar Version -rff result.json}.
+ */
+public class BenchmarkRunner {
+
+    private static final String RESULTS = "target/jmh-results.json";
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions cmd = new CommandLineOptions(args);
+        String result = cmd.getResult().orElse(RESULTS);
+        File parent = new File(result).getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        Options options = new OptionsBuilder()
+                .parent(cmd)
+                .resultFormat(cmd.getResultFormat().orElse(ResultFormatType.JSON))
+                .result(result)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2020 lorislab.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vn.com.acbs.digital.migration.toolkit.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import vn.com.acbs.digital.migration.toolkit.models.ChecksumAlgorithm;
+import vn.com.acbs.digital.migration.toolkit.models.ResourceLoader;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checksum of the script content from 1 KB to 100 MB.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChecksumBenchmark {
+
+    @Param({"1024", "1048576", "104857600"})
+    public int size;
+
+    @Param({"CRC32", "CRC32C"})
+    public ChecksumAlgorithm algorithm;
+
+    private byte[] data;
+
+    @Setup
+    public void setup() {
+        data = new byte[size];
+        new Random(size).nextBytes(data);
+    }
+
+    @Benchmark
+    public long checksum() {
+        return algorithm.checksum(data);
+    }
+
+    @Benchmark
+    public long resourceLoaderChecksum() {
+        return ResourceLoader.checksum(data);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2020 lorislab.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vn.com.acbs.digital.migration.toolkit.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import vn.com.acbs.digital.migration.toolkit.deployment.ScriptDiscovery;
+import vn.com.acbs.digital.migration.toolkit.models.ChecksumAlgorithm;
+import vn.com.acbs.digital.migration.toolkit.models.Resource;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+
+/**
+ * Build-time discovery of the migration scripts in the synthetic jar.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DiscoveryBenchmark {
+
+    private static final String LOCATION = "db/migration/";
+
+    @Param({"2000"})
+    public int scripts;
+
+    @Param({"CRC32", "CRC32C"})
+    public ChecksumAlgorithm algorithm;
+
+    private Path directory;
+
+    private URLClassLoader classLoader;
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("migration-toolkit-benchmark");
+        Path jar = directory.resolve("migrations.jar");
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+            out.putNextEntry(new JarEntry(LOCATION));
+            out.closeEntry();
+            for (int i = 1; i <= scripts; i++) {
+                out.putNextEntry(new JarEntry(LOCATION + "V1." + i + "__migration_" + i + ".sql"));
+                write(out, i);
+                out.closeEntry();
+            }
+        }
+        classLoader = new URLClassLoader(new URL[]{jar.toUri().toURL()}, null);
+    }
+
+    private static void write(OutputStream out, int i) throws IOException {
+        StringBuilder sql = new StringBuilder();
+        sql.append("CREATE TABLE table_").append(i).append(" (\n");
+        for (int c = 0; c < 20; c++) {
+            sql.append("    column_").append(c).append(" VARCHAR(255),\n");
+        }
+        sql.append("    id BIGINT PRIMARY KEY\n);\n");
+        sql.append("CREATE INDEX table_").append(i).append("_idx ON table_").append(i).append(" (column_0);\n");
+        out.write(sql.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        classLoader.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public List<Resource> discover() throws IOException, URISyntaxException {
+        return ScriptDiscovery.resources(classLoader, algorithm, LOCATION);
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2020 lorislab.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vn.com.acbs.digital.migration.toolkit.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import vn.com.acbs.digital.migration.toolkit.Toolkit;
+import vn.com.acbs.digital.migration.toolkit.ToolkitConfig;
+import vn.com.acbs.digital.migration.toolkit.database.PostgresDatabase;
+import vn.com.acbs.digital.migration.toolkit.models.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Migration planning for the large number of scripts: pending versioned migrations and changed
+ * repeatable migrations against the history.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MigrationPlanBenchmark {
+
+    @Param({"10000"})
+    public int scripts;
+
+    private PlanDatabase database;
+
+    private MigrationPlan plan;
+
+    private String current;
+
+    private Map<String, Migration> history;
+
+    @Setup
+    public void setup() {
+        List<VersionedMigration> versioned = new ArrayList<>(scripts);
+        List<Resource> repeatable = new ArrayList<>(scripts);
+        history = new HashMap<>(scripts * 2);
+        for (int i = 1; i <= scripts; i++) {
+            Resource v = ResourceLoader.createFrom("db/migration/V1." + i + "__migration_" + i + ".sql");
+            v.checksum = (long) i;
+            versioned.add(new VersionedMigration(v));
+
+            Resource r = ResourceLoader.createFrom("db/migration/R__repeatable_" + i + ".sql");
+            r.checksum = (long) i;
+            repeatable.add(r);
+
+            // every tenth repeatable migration changed
+            Migration m = new Migration();
+            m.id = (long) i;
+            m.description = r.description;
+            m.type = ChecksumAlgorithm.CRC32.type();
+            m.checksum = i % 10 == 0 ? -i : (long) i;
+            history.put(m.description, m);
+        }
+        plan = MigrationPlan.of(versioned, repeatable);
+        // the database is one release behind
+        current = "1." + (scripts - 100);
+        database = new PlanDatabase(ToolkitConfig.builder()
+                .table(Toolkit.HISTORY_TABLE)
+                .migrationPlan(plan)
+                .build());
+    }
+
+    @Benchmark
+    public Object createPlan() {
+        return MigrationPlan.of(plan.getVersioned(), plan.getRepeatable());
+    }
+
+    @Benchmark
+    public List<Migration> createMigrations() {
+        return database.pending(current);
+    }
+
+    @Benchmark
+    public List<Migration> createRepeatableMigrations() {
+        return database.changed(history);
+    }
+
+    static class PlanDatabase extends PostgresDatabase {
+
+        private final ToolkitConfig config;
+
+        PlanDatabase(ToolkitConfig config) {
+            super(null, config);
+            this.config = config;
+        }
+
+        List<Migration> pending(String version) {
+            return createMigrations(config.getMigrationPlan().pending(version), 1);
+        }
+
+        List<Migration> changed(Map<String, Migration> history) {
+            Map<String, Migration> rows = new HashMap<>(history.size() * 2);
+            history.forEach((k, v) -> rows.put(k, copy(v)));
+            return createRepeatableMigrations(history.size() + 1, config.getRepeatableMigrations(), rows);
+        }
+
+        private static Migration copy(Migration m) {
+            Migration result = new Migration();
+            result.id = m.id;
+            result.description = m.description;
+            result.type = m.type;
+            result.checksum = m.checksum;
+            return result;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2020 lorislab.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vn.com.acbs.digital.migration.toolkit.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import vn.com.acbs.digital.migration.toolkit.models.Resource;
+import vn.com.acbs.digital.migration.toolkit.models.ResourceLoader;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parse of the migration script names.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResourceLoaderBenchmark {
+
+    private static final String[] NAMES = {
+            "db/migration/V1__init.sql",
+            "db/migration/V1.0.12__add_customer_account_index.sql",
+            "db/migration/V20261018120000__create_order_history_partitions.sql",
+            "db/migration/R__refresh_customer_balance_view.sql"
+    };
+
+    @Benchmark
+    public void createFrom(Blackhole blackhole) {
+        for (String name : NAMES) {
+            Resource resource = ResourceLoader.createFrom(name);
+            blackhole.consume(resource);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2020 lorislab.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vn.com.acbs.digital.migration.toolkit.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import vn.com.acbs.digital.migration.toolkit.models.Version;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parse and compare of the migration versions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VersionBenchmark {
+
+    @Param({"1.2.3", "2021.10.18.1", "20261018120000"})
+    public String value;
+
+    private Version version;
+
+    private Version other;
+
+    @Setup
+    public void setup() {
+        version = Version.of(value);
+        other = Version.of(value + ".1");
+    }
+
+    @Benchmark
+    public Version parse() {
+        return Version.of(value);
+    }
+
+    @Benchmark
+    public int compare() {
+        return version.compareTo(other);
+    }
+}
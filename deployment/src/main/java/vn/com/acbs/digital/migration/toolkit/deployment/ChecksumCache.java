@@ -0,0 +1,212 @@
+/*
+ * Copyright 2020 lorislab.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vn.com.acbs.digital.migration.toolkit.deployment;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import vn.com.acbs.digital.migration.toolkit.models.ChecksumAlgorithm;
+import vn.com.acbs.digital.migration.toolkit.models.ScriptBundle;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Checksums of the discovered scripts kept between the builds in the build output directory.
+ * The manifest is keyed by the script URI, its size and its modification time. The content of
+ * the unchanged scripts is taken from the bundle of the previous build, only the new or changed
+ * scripts are read and checksummed again.
+ */
+final class ChecksumCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ChecksumCache.class);
+
+    private static final String DIRECTORY = "migration-toolkit";
+
+    private static final String MANIFEST = "checksums.manifest";
+
+    private static final String BUNDLE = "scripts.bundle";
+
+    private static final ChecksumCache DISABLED = new ChecksumCache(null, new HashMap<>(), null);
+
+    private final Path directory;
+
+    private final Map<String, Entry> previous;
+
+    private final Map<String, Entry> current = new ConcurrentHashMap<>();
+
+    private final ScriptBundle bundle;
+
+    private ChecksumCache(Path directory, Map<String, Entry> previous, ScriptBundle bundle) {
+        this.directory = directory;
+        this.previous = previous;
+        this.bundle = bundle;
+    }
+
+    /**
+     * Loads the cache of the previous build.
+     *
+     * @param output the build output directory or {@code null} to disable the cache
+     * @return the cache
+     */
+    static ChecksumCache load(Path output) {
+        if (output == null) {
+            return DISABLED;
+        }
+        Path directory = output.resolve(DIRECTORY);
+        Map<String, Entry> entries = new HashMap<>();
+        ScriptBundle bundle = null;
+        try {
+            Path manifest = directory.resolve(MANIFEST);
+            Path bundleFile = directory.resolve(BUNDLE);
+            if (Files.isRegularFile(manifest) && Files.isRegularFile(bundleFile)) {
+                for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+                    Entry entry = Entry.parse(line);
+                    if (entry != null) {
+                        entries.put(entry.uri, entry);
+                    }
+                }
+                bundle = ScriptBundle.read(ByteBuffer.wrap(Files.readAllBytes(bundleFile)));
+            }
+        } catch (IOException | RuntimeException ex) {
+            log.debug("Ignore the migration checksum cache {}", directory, ex);
+            entries.clear();
+            bundle = null;
+        }
+        return new ChecksumCache(directory, entries, bundle);
+    }
+
+    /**
+     * Gets the content of the unchanged script from the previous build.
+     *
+     * @param uri       the script URI
+     * @param script    the script path
+     * @param size      the size of the script
+     * @param modified  the modification time of the script
+     * @param algorithm the checksum algorithm
+     * @return the cached content or {@code null} if the script is new or changed
+     */
+    Cached get(String uri, String script, long size, long modified, ChecksumAlgorithm algorithm) {
+        Entry entry = previous.get(uri);
+        if (bundle == null || entry == null || entry.size != size || entry.modified != modified
+                || entry.algorithm != algorithm || !entry.script.equals(script)) {
+            return null;
+        }
+        ByteBuffer content = bundle.content(script);
+        if (content == null || content.remaining() != size) {
+            return null;
+        }
+        byte[] data = new byte[content.remaining()];
+        content.get(data);
+        current.put(uri, entry);
+        return new Cached(entry.checksum, data);
+    }
+
+    void put(String uri, String script, long size, long modified, ChecksumAlgorithm algorithm, long checksum) {
+        if (directory != null) {
+            current.put(uri, new Entry(uri, script, size, modified, algorithm, checksum));
+        }
+    }
+
+    int hits() {
+        int result = 0;
+        for (Entry entry : current.values()) {
+            if (previous.get(entry.uri) == entry) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Stores the manifest of this build with the created bundle.
+     *
+     * @param content the bundle content
+     */
+    void save(byte[] content) {
+        if (directory == null) {
+            return;
+        }
+        List<String> lines = new ArrayList<>(current.size());
+        current.values().forEach(e -> lines.add(e.format()));
+        try {
+            Files.createDirectories(directory);
+            Files.write(directory.resolve(BUNDLE), content);
+            Files.write(directory.resolve(MANIFEST), lines, StandardCharsets.UTF_8);
+        } catch (IOException ex) {
+            log.warn("Error write the migration checksum cache {}", directory, ex);
+        }
+    }
+
+    /**
+     * The cached checksum and content of the script.
+     */
+    static final class Cached {
+
+        final long checksum;
+
+        final byte[] data;
+
+        Cached(long checksum, byte[] data) {
+            this.checksum = checksum;
+            this.data = data;
+        }
+    }
+
+    private static final class Entry {
+
+        final String uri;
+
+        final String script;
+
+        final long size;
+
+        final long modified;
+
+        final ChecksumAlgorithm algorithm;
+
+        final long checksum;
+
+        Entry(String uri, String script, long size, long modified, ChecksumAlgorithm algorithm, long checksum) {
+            this.uri = uri;
+            this.script = script;
+            this.size = size;
+            this.modified = modified;
+            this.algorithm = algorithm;
+            this.checksum = checksum;
+        }
+
+        String format() {
+            return size + "\t" + modified + "\t" + algorithm + "\t" + checksum + "\t" + script + "\t" + uri;
+        }
+
+        static Entry parse(String line) {
+            String[] values = line.split("\t", 6);
+            if (values.length != 6) {
+                return null;
+            }
+            return new Entry(values[5], values[4], Long.parseLong(values[0]), Long.parseLong(values[1]),
+                    ChecksumAlgorithm.valueOf(values[2]), Long.parseLong(values[3]));
+        }
+    }
+}
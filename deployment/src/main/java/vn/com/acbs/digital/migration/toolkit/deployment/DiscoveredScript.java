@@ -0,0 +1,33 @@
+/*
+ * Copyright 2020 lorislab.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vn.com.acbs.digital.migration.toolkit.deployment;
+
+import vn.com.acbs.digital.migration.toolkit.models.Resource;
+
+/**
+ * The migration resource discovered at build time with its content.
+ */
+final class DiscoveredScript {
+
+    final Resource resource;
+
+    final byte[] data;
+
+    DiscoveredScript(Resource resource, byte[] data) {
+        this.resource = resource;
+        this.data = data;
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2020 lorislab.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vn.com.acbs.digital.migration.toolkit.deployment;
+
+import vn.com.acbs.digital.migration.toolkit.models.Resource;
+import vn.com.acbs.digital.migration.toolkit.models.ResourceLoader;
+import vn.com.acbs.digital.migration.toolkit.models.SqlStatement;
+import vn.com.acbs.digital.migration.toolkit.models.SqlStatementSplitter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the statements of the migration scripts which hold the long ACCESS EXCLUSIVE lock or rewrite the table.
+ * The statements on the tables created by the same script are not reported because the tables are empty.
+ * The script is skipped with the {@code -- toolkit:lint=false} directive.
+ */
+public class MigrationLinter {
+
+    /**
+     * The lint rules.
+     */
+    public enum Rule {
+
+        CREATE_INDEX("CREATE INDEX blocks the writes of the table while the index is built, use CREATE INDEX CONCURRENTLY"
+                + " in the script with the '-- toolkit:transaction=false' directive"),
+
+        CONCURRENTLY_IN_TRANSACTION("CONCURRENTLY can not run inside the transaction, add the '-- toolkit:transaction=false' directive"),
+
+        ALTER_COLUMN_TYPE("ALTER COLUMN TYPE rewrites the table under the ACCESS EXCLUSIVE lock"),
+
+        VOLATILE_DEFAULT("ADD COLUMN with the volatile default rewrites the table under the ACCESS EXCLUSIVE lock"),
+
+        ADD_CONSTRAINT("ADD CONSTRAINT checks the existing rows under the lock, add the constraint NOT VALID and VALIDATE it"
+                + " in the next script, or add the UNIQUE and PRIMARY KEY constraints USING INDEX built concurrently"),
+
+        CLUSTER("CLUSTER rewrites the table under the ACCESS EXCLUSIVE lock"),
+
+        VACUUM_FULL("VACUUM FULL rewrites the table under the ACCESS EXCLUSIVE lock");
+
+        public final String message;
+
+        Rule(String message) {
+            this.message = message;
+        }
+    }
+
+    /**
+     * The statement reported by the rule.
+     */
+    public static class Finding {
+
+        public final String script;
+
+        public final int line;
+
+        public final Rule rule;
+
+        public final String statement;
+
+        public Finding(String script, int line, Rule rule, String statement) {
+            this.script = script;
+            this.line = line;
+            this.rule = rule;
+            this.statement = statement;
+        }
+
+        @Override
+        public String toString() {
+            return script + ":" + line + " [" + rule + "] " + rule.message + ". Statement: " + statement;
+        }
+    }
+
+    private static final int FLAGS = Pattern.CASE_INSENSITIVE | Pattern.DOTALL;
+
+    private static final Pattern CREATE_TABLE = Pattern.compile(
+            "^CREATE\\s+(?:(?:GLOBAL|LOCAL)\\s+)?(?:(?:TEMP|TEMPORARY|UNLOGGED)\\s+)?TABLE\\s+(?:IF\\s+NOT\\s+EXISTS\\s+)?([^\\s(]+)", FLAGS);
+
+    private static final Pattern CREATE_INDEX = Pattern.compile(
+            "^CREATE\\s+(?:UNIQUE\\s+)?INDEX\\s+(CONCURRENTLY\\s+)?.*?\\bON\\s+(?:ONLY\\s+)?([^\\s(]+)", FLAGS);
+
+    private static final Pattern CONCURRENTLY = Pattern.compile(
+            "^(?:CREATE\\s+(?:UNIQUE\\s+)?INDEX|DROP\\s+INDEX|REINDEX)\\s.*?\\bCONCURRENTLY\\b", FLAGS);
+
+    private static final Pattern ALTER_TABLE = Pattern.compile(
+            "^ALTER\\s+TABLE\\s+(?:IF\\s+EXISTS\\s+)?(?:ONLY\\s+)?([^\\s]+)\\s+(.*)", FLAGS);
+
+    private static final Pattern ALTER_COLUMN_TYPE = Pattern.compile(
+            "\\bALTER\\s+(?:COLUMN\\s+)?\\S+\\s+(?:SET\\s+DATA\\s+)?TYPE\\b", FLAGS);
+
+    private static final Pattern ADD_COLUMN = Pattern.compile(
+            "\\bADD\\s+(?:COLUMN\\s+)?(?:IF\\s+NOT\\s+EXISTS\\s+)?(?!CONSTRAINT\\b|FOREIGN\\b|CHECK\\b|UNIQUE\\b|PRIMARY\\b)\\S+\\s+([^,]*)", FLAGS);
+
+    private static final Pattern VOLATILE = Pattern.compile(
+            "^(?:BIG|SMALL)?SERIAL\\b|\\bDEFAULT\\b.*\\b(?:random|clock_timestamp|timeofday|gen_random_uuid|uuid_generate_v[1-4]|nextval|txid_current)\\s*\\(", FLAGS);
+
+    private static final Pattern ADD_CONSTRAINT = Pattern.compile(
+            "\\bADD\\s+(?:CONSTRAINT\\s+\\S+\\s+)?(?:FOREIGN\\s+KEY|CHECK|UNIQUE|PRIMARY\\s+KEY)\\b", FLAGS);
+
+    private static final Pattern NOT_VALID = Pattern.compile("\\bNOT\\s+VALID\\b|\\bUSING\\s+INDEX\\b", FLAGS);
+
+    private static final Pattern CLUSTER = Pattern.compile("^CLUSTER\\b", FLAGS);
+
+    private static final Pattern VACUUM_FULL = Pattern.compile("^VACUUM\\s+(?:\\([^)]*\\bFULL\\b[^)]*\\)|FULL\\b)", FLAGS);
+
+    private MigrationLinter() {
+    }
+
+    /**
+     * Checks the statements of the script.
+     *
+     * @param resource the resource of the script
+     * @param content  the script content
+     * @return the findings in the order of the statements
+     */
+    public static List<Finding> lint(Resource resource, byte[] content) {
+        if ("false".equalsIgnoreCase(ResourceLoader.directives(content).get(ResourceLoader.DIRECTIVE_LINT))) {
+            return new ArrayList<>();
+        }
+        return lint(resource, new String(content, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Checks the statements of the script without the script directives.
+     *
+     * @param resource the resource of the script
+     * @param content  the script content
+     * @return the findings in the order of the statements
+     */
+    public static List<Finding> lint(Resource resource, String content) {
+        List<Finding> result = new ArrayList<>();
+        Set<String> created = new HashSet<>();
+        for (SqlStatement statement : SqlStatementSplitter.split(content, false)) {
+            String sql = statement.sql.replaceAll("\\s+", " ").trim();
+            List<Rule> rules = new ArrayList<>();
+
+            Matcher matcher = CREATE_TABLE.matcher(sql);
+            if (matcher.find()) {
+                created.add(table(matcher.group(1)));
+            }
+            if (resource.transactional && CONCURRENTLY.matcher(sql).find()) {
+                rules.add(Rule.CONCURRENTLY_IN_TRANSACTION);
+            }
+            matcher = CREATE_INDEX.matcher(sql);
+            if (matcher.find() && matcher.group(1) == null && !created.contains(table(matcher.group(2)))) {
+                rules.add(Rule.CREATE_INDEX);
+            }
+            matcher = ALTER_TABLE.matcher(sql);
+            if (matcher.find() && !created.contains(table(matcher.group(1)))) {
+                String actions = matcher.group(2);
+                if (ALTER_COLUMN_TYPE.matcher(actions).find()) {
+                    rules.add(Rule.ALTER_COLUMN_TYPE);
+                }
+                Matcher column = ADD_COLUMN.matcher(actions);
+                while (column.find()) {
+                    if (VOLATILE.matcher(column.group(1)).find()) {
+                        rules.add(Rule.VOLATILE_DEFAULT);
+                        break;
+                    }
+                }
+                if (ADD_CONSTRAINT.matcher(actions).find() && !NOT_VALID.matcher(actions).find()) {
+                    rules.add(Rule.ADD_CONSTRAINT);
+                }
+            }
+            if (CLUSTER.matcher(sql).find()) {
+                rules.add(Rule.CLUSTER);
+            }
+            if (VACUUM_FULL.matcher(sql).find()) {
+                rules.add(Rule.VACUUM_FULL);
+            }
+            for (Rule rule : rules) {
+                result.add(new Finding(resource.script, statement.line, rule, sql));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the table name without the schema and the quotes.
+     */
+    private static String table(String name) {
+        String result = name.substring(name.lastIndexOf('.') + 1).replace("\"", "");
+        return result.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2020 lorislab.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vn.com.acbs.digital.migration.toolkit.deployment;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import vn.com.acbs.digital.migration.toolkit.models.ChecksumAlgorithm;
+import vn.com.acbs.digital.migration.toolkit.models.Resource;
+import vn.com.acbs.digital.migration.toolkit.models.ResourceLoader;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Build-time discovery of the migration scripts. The scripts of each location are read and checksummed
+ * on the fork-join pool, the unchanged scripts are taken from the checksum cache.
+ */
+public final class ScriptDiscovery {
+
+    private static final Logger log = LoggerFactory.getLogger(ScriptDiscovery.class);
+
+    private static final String JAR_PROTOCOL = "jar";
+
+    private static final String FILE_PROTOCOL = "file";
+
+    private final ClassLoader classLoader;
+
+    private final ChecksumAlgorithm algorithm;
+
+    private final ChecksumCache cache;
+
+    ScriptDiscovery(ClassLoader classLoader, ChecksumAlgorithm algorithm, ChecksumCache cache) {
+        this.classLoader = classLoader;
+        this.algorithm = algorithm;
+        this.cache = cache;
+    }
+
+    /**
+     * Discovers the migration resources in the location without the checksum cache.
+     *
+     * @param classLoader the class loader of the migration scripts
+     * @param algorithm   the checksum algorithm
+     * @param location    the location of the migration scripts
+     * @return the discovered resources
+     * @throws IOException        if the scripts can not be read
+     * @throws URISyntaxException if the location is not a valid URI
+     */
+    public static List<Resource> resources(ClassLoader classLoader, ChecksumAlgorithm algorithm, String location)
+            throws IOException, URISyntaxException {
+        return new ScriptDiscovery(classLoader, algorithm, ChecksumCache.load(null)).discover(location).stream()
+                .map(x -> x.resource).collect(Collectors.toList());
+    }
+
+    /**
+     * Discovers the migration scripts in the location.
+     *
+     * @param location the location of the migration scripts
+     * @return the discovered scripts
+     * @throws IOException        if the scripts can not be read
+     * @throws URISyntaxException if the location is not a valid URI
+     */
+    List<DiscoveredScript> discover(String location) throws IOException, URISyntaxException {
+        if (location == null || location.isBlank()) {
+            return Collections.emptyList();
+        }
+        List<DiscoveredScript> result = new ArrayList<>();
+        Enumeration<URL> migrations = classLoader.getResources(location);
+        while (migrations.hasMoreElements()) {
+            URL path = migrations.nextElement();
+            log.info("Adding application migrations in path '{}' using protocol '{}'", path.getPath(), path.getProtocol());
+
+            if (JAR_PROTOCOL.equals(path.getProtocol())) {
+                try (final FileSystem fileSystem = initFileSystem(path.toURI())) {
+                    result.addAll(getResources(location, path, JAR_PROTOCOL));
+                }
+            } else if (FILE_PROTOCOL.equals(path.getProtocol())) {
+                result.addAll(getResources(location, path, FILE_PROTOCOL));
+            } else {
+                log.warn("Unsupported URL protocol '{}' for path '{}'. Migration files will not be discovered.", path.getProtocol(), path.getPath());
+            }
+        }
+        return result;
+    }
+
+    private List<DiscoveredScript> getResources(final String location, final URL path, final String protocol) throws IOException, URISyntaxException {
+        List<Path> files;
+        try (final Stream<Path> pathStream = Files.walk(Paths.get(path.toURI()))) {
+            files = pathStream.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+        // read and checksum the scripts on the fork-join pool
+        return files.parallelStream()
+                .map(it -> {
+                    String   resourcePath = Paths.get(location, it.getFileName().toString()).toString();
+                    Resource r            = ResourceLoader.createFrom(resourcePath);
+                    BasicFileAttributes attributes = readAttributes(it);
+                    String uri      = it.toUri().toString();
+                    long   size     = attributes.size();
+                    long   modified = attributes.lastModifiedTime().toMillis();
+                    ChecksumCache.Cached cached = cache.get(uri, resourcePath, size, modified, algorithm);
+                    if (cached != null) {
+                        r.checksum = cached.checksum;
+                        ResourceLoader.applyDirectives(r, cached.data);
+                        return new DiscoveredScript(r, cached.data);
+                    }
+                    ByteBuffer content = loadResourceContent(protocol, it);
+                    r.checksum = algorithm.checksum(content);
+                    byte[] data = new byte[content.remaining()];
+                    content.get(data);
+                    ResourceLoader.applyDirectives(r, data);
+                    cache.put(uri, resourcePath, size, modified, algorithm, r.checksum);
+                    return new DiscoveredScript(r, data);
+                })
+                .filter(s -> s.resource.checksum > 0)
+                .peek(it -> log.debug("Discovered: " + it.resource))
+                .collect(Collectors.toList());
+    }
+
+    private BasicFileAttributes readAttributes(Path it) {
+        try {
+            return Files.readAttributes(it, BasicFileAttributes.class);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Error read the migration resource " + it, ex);
+        }
+    }
+
+    private ByteBuffer loadResourceContent(String protocol, Path it) {
+        try {
+            if (FILE_PROTOCOL.equals(protocol)) {
+                try (FileChannel channel = FileChannel.open(it, StandardOpenOption.READ)) {
+                    return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                }
+            }
+            return ByteBuffer.wrap(Files.readAllBytes(it));
+        } catch (IOException ex) {
+            throw new IllegalStateException("Error read the migration resource " + it, ex);
+        }
+    }
+
+    private FileSystem initFileSystem(final URI uri) throws IOException {
+        final Map<String, String> env = new HashMap<>();
+        env.put("create", "true");
+        return FileSystems.newFileSystem(uri, env);
+    }
+}
@@ -18,32 +18,36 @@ package vn.com.acbs.digital.migration.toolkit.deployment;
 import io.quarkus.arc.deployment.BeanContainerBuildItem;
 import io.quarkus.arc.deployment.UnremovableBeanBuildItem;
 import io.quarkus.arc.runtime.BeanContainer;
+import io.quarkus.deployment.Capabilities;
+import io.quarkus.deployment.Capability;
 import io.quarkus.deployment.annotations.BuildProducer;
 import io.quarkus.deployment.annotations.BuildStep;
 import io.quarkus.deployment.annotations.ExecutionTime;
 import io.quarkus.deployment.annotations.Record;
 import io.quarkus.deployment.builditem.FeatureBuildItem;
+import io.quarkus.deployment.builditem.GeneratedResourceBuildItem;
 import io.quarkus.deployment.builditem.ServiceStartBuildItem;
 import io.quarkus.deployment.builditem.nativeimage.NativeImageResourceBuildItem;
+import io.quarkus.deployment.pkg.builditem.OutputTargetBuildItem;
 import io.vertx.mutiny.pgclient.PgPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import vn.com.acbs.digital.migration.toolkit.models.Resource;
 import vn.com.acbs.digital.migration.toolkit.models.ResourceLoader;
+import vn.com.acbs.digital.migration.toolkit.models.ScriptBundle;
 import vn.com.acbs.digital.migration.toolkit.models.VersionedMigration;
+import vn.com.acbs.digital.migration.toolkit.runtime.LintMode;
 import vn.com.acbs.digital.migration.toolkit.runtime.ToolkitBuildTimeConfig;
 import vn.com.acbs.digital.migration.toolkit.runtime.ToolkitRecorder;
 import vn.com.acbs.digital.migration.toolkit.runtime.ToolkitRuntimeConfig;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.URI;
 import java.net.URISyntaxException;
-import java.net.URL;
-import java.nio.file.*;
-import java.util.*;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import static io.quarkus.deployment.annotations.ExecutionTime.STATIC_INIT;
 
@@ -51,14 +55,12 @@ public class ToolkitSqlClientProcessor {
 
     private static final Logger log = LoggerFactory.getLogger(ToolkitSqlClientProcessor.class);
 
-    private static final String JAR_PROTOCOL = "jar";
-
-    private static final String FILE_PROTOCOL = "file";
-
     public static String TOOLKIT_SQL_CLIENT = "toolkit-sql-client";
 
     public static String PG_TOOLKIT_SQL_CLIENT = "pg-toolkit-sql-client";
 
+    private static final String MICROMETER = Capability.QUARKUS_PREFIX + "micrometer";
+
     ToolkitBuildTimeConfig config;
 
     @BuildStep
@@ -86,10 +88,18 @@ public class ToolkitSqlClientProcessor {
         return UnremovableBeanBuildItem.beanClassNames(PgPool.class.getName());
     }
 
+    @BuildStep
+    @Record(STATIC_INIT)
+    void metrics(ToolkitRecorder recorder, Capabilities capabilities) {
+        recorder.setMetricsEnabled(config.metricsEnabled && capabilities.isPresent(MICROMETER));
+    }
+
     @BuildStep
     @Record(STATIC_INIT)
     void build(BuildProducer<FeatureBuildItem> feature, ToolkitRecorder recorder,
-               BuildProducer<NativeImageResourceBuildItem> resource) throws IOException, URISyntaxException {
+               BuildProducer<NativeImageResourceBuildItem> resource,
+               BuildProducer<GeneratedResourceBuildItem> generatedResource,
+               OutputTargetBuildItem outputTarget) throws IOException, URISyntaxException {
 
         feature.produce(new FeatureBuildItem(TOOLKIT_SQL_CLIENT));
 
@@ -99,16 +109,31 @@ public class ToolkitSqlClientProcessor {
             throw new IllegalStateException("'migration.location' is empty!");
         }
 
-        // find migration resources
-        List<Resource> resources = getMigrationFiles(location);
+        // find migration resources, the unchanged scripts are taken from the cache of the previous build
+        ChecksumCache cache = ChecksumCache.load(config.checksumCache ? outputTarget.getOutputDirectory() : null);
+        List<DiscoveredScript> scripts = new ScriptDiscovery(Thread.currentThread().getContextClassLoader(),
+                config.checksumAlgorithm, cache).discover(location);
+        List<Resource> resources = scripts.stream().map(x -> x.resource).collect(Collectors.toList());
         if (!resources.isEmpty()) {
 
             // validate resources
             ResourceLoader.validateResources(resources);
+            if (config.lint != LintMode.NONE) {
+                lint(scripts);
+            }
 
-            // native resource
-            String[] paths = resources.stream().map(x -> x.script).toArray(String[]::new);
-            resource.produce(new NativeImageResourceBuildItem(paths));
+            // compile the scripts into the bundle, the migrations take the script by its position
+            Map<String, byte[]> contents = new LinkedHashMap<>();
+            scripts.stream().sorted(Comparator.comparing(x -> x.resource.script)).forEach(x -> {
+                contents.putIfAbsent(x.resource.script, x.data);
+                // the sorted duplicates of the script path are adjacent
+                x.resource.bundleIndex = contents.size() - 1;
+            });
+            byte[] bundle = ScriptBundle.write(contents, config.bundleCompress);
+            generatedResource.produce(new GeneratedResourceBuildItem(ScriptBundle.BUNDLE, bundle));
+            resource.produce(new NativeImageResourceBuildItem(ScriptBundle.BUNDLE));
+            cache.save(bundle);
+            log.debug("Migration bundle {} scripts ({} cached), {} bytes", contents.size(), cache.hits(), bundle.length);
 
             // add the repeatable migrations to recorder
             List<Resource> repeatableMigration = resources.stream()
@@ -116,16 +141,27 @@ public class ToolkitSqlClientProcessor {
             ;
             if (!repeatableMigration.isEmpty()) {
                 recorder.setRepeatableMigrations(repeatableMigration);
+                recorder.setRepeatableDigest(ResourceLoader.repeatableDigest(repeatableMigration));
             }
 
             // add the versioned migrations to recorder
             List<VersionedMigration> migrations = resources.stream()
-                    .filter(r -> !r.repeatable)
+                    .filter(r -> !r.repeatable && !r.baseline)
                     .map(VersionedMigration::new).sorted().collect(Collectors.toList());
             if (!migrations.isEmpty()) {
                 recorder.setVersionedMigrations(migrations);
             }
+
+            // add the baseline scripts of the empty database to recorder
+            List<VersionedMigration> baselines = resources.stream()
+                    .filter(r -> r.baseline)
+                    .map(VersionedMigration::new).sorted().collect(Collectors.toList());
+            if (!baselines.isEmpty()) {
+                recorder.setBaselineMigrations(baselines);
+            }
         }
+        recorder.setChecksumAlgorithm(config.checksumAlgorithm);
+        recorder.createMigrationPlan();
         // add imports
         List<String> afterMigrationScripts = config.testDataScripts;
         afterMigrationScripts.remove(ToolkitBuildTimeConfig.DEFAULT_TEST_DATA_SCRIPTS);
@@ -136,73 +172,19 @@ public class ToolkitSqlClientProcessor {
 
     }
 
-
-
-    private List<Resource> getMigrationFiles(String location) throws IOException, URISyntaxException {
-        if (location == null || location.isBlank()) {
-            return Collections.emptyList();
-        }
-        List<Resource>   result     = new ArrayList<>();
-        Enumeration<URL> migrations = Thread.currentThread().getContextClassLoader().getResources(location);
-        while (migrations.hasMoreElements()) {
-            URL path = migrations.nextElement();
-            log.info("Adding application migrations in path '{}' using protocol '{}'", path.getPath(), path.getProtocol());
-
-            if (JAR_PROTOCOL.equals(path.getProtocol())) {
-                try (final FileSystem fileSystem = initFileSystem(path.toURI())) {
-                    result.addAll(getResources(location, path, JAR_PROTOCOL));
-                }
-            } else if (FILE_PROTOCOL.equals(path.getProtocol())) {
-                result.addAll(getResources(location, path, FILE_PROTOCOL));
-            } else {
-                log.warn("Unsupported URL protocol '{}' for path '{}'. Migration files will not be discovered.", path.getProtocol(), path.getPath());
-            }
-        }
-        return result;
-    }
-
-    private Set<Resource> getResources(final String location, final URL path, final String protocol) throws IOException, URISyntaxException {
-        try (final Stream<Path> pathStream = Files.walk(Paths.get(path.toURI()))) {
-            return pathStream
-                    .filter(Files::isRegularFile)
-                    .map(it -> {
-                        String   resourcePath = Paths.get(location, it.getFileName().toString()).toString();
-                        Resource r            = ResourceLoader.createFrom(resourcePath);
-                        byte[]   data         = loadResourceContent(protocol, it, resourcePath);
-                        r.checksum = ResourceLoader.checksum(data);
-                        return r;
-                    })
-                    .filter(r -> r.checksum > 0)
-                    .peek(it -> log.debug("Discovered: " + it))
-                    .collect(Collectors.toSet());
-        }
-    }
-
-    private byte[] loadResourceContent(String protocol, Path it, String resourcePath) {
-        if (JAR_PROTOCOL.equals(protocol)) {
-            try {
-                return Files.readAllBytes(it);
-            }
-            catch (IOException ex) {
-                throw new IllegalStateException(ex);
-            }
-        } else {
-            try (InputStream in = Thread.currentThread().getContextClassLoader().getResourceAsStream(resourcePath)) {
-                if (in != null) {
-                    return in.readAllBytes();
-                }
-            }
-            catch (IOException ex) {
-                throw new IllegalStateException(ex);
-            }
+    /**
+     * Logs the lint findings of the scripts and fails the build in the {@code FAIL} mode.
+     */
+    private void lint(List<DiscoveredScript> scripts) {
+        List<MigrationLinter.Finding> findings = scripts.stream()
+                .sorted(Comparator.comparing(x -> x.resource.script))
+                .flatMap(x -> MigrationLinter.lint(x.resource, x.data).stream())
+                .collect(Collectors.toList());
+        findings.forEach(f -> log.warn("Migration lint {}", f));
+        if (config.lint == LintMode.FAIL && !findings.isEmpty()) {
+            throw new IllegalStateException("Migration lint found " + findings.size() + " lock heavy statements: "
+                    + findings.stream().map(f -> f.script + ":" + f.line + " [" + f.rule + "]").collect(Collectors.joining(", ")));
         }
-        return null;
-    }
-
-    private FileSystem initFileSystem(final URI uri) throws IOException {
-        final Map<String, String> env = new HashMap<>();
-        env.put("create", "true");
-        return FileSystems.newFileSystem(uri, env);
     }
 
 }
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2020 lorislab.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vn.com.acbs.digital.migration.toolkit.deployment;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import vn.com.acbs.digital.migration.toolkit.models.ChecksumAlgorithm;
+import vn.com.acbs.digital.migration.toolkit.models.ScriptBundle;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+public class ChecksumCacheTest {
+
+    private static final String URI = "file:/app/classes/db/migration/V1__init.sql";
+
+    private static final String SCRIPT = "db/migration/V1__init.sql";
+
+    private static final byte[] CONTENT = "CREATE TABLE a (id INT);".getBytes(StandardCharsets.UTF_8);
+
+    private static final long MODIFIED = 1_600_000_000_000L;
+
+    private static final long CHECKSUM = 42L;
+
+    @TempDir
+    Path output;
+
+    /**
+     * Stores the cache of the script as the previous build.
+     */
+    private void previousBuild() {
+        ChecksumCache cache = ChecksumCache.load(output);
+        cache.put(URI, SCRIPT, CONTENT.length, MODIFIED, ChecksumAlgorithm.CRC32, CHECKSUM);
+        cache.save(ScriptBundle.write(Map.of(SCRIPT, CONTENT), true));
+    }
+
+    private Path file(String name) {
+        return output.resolve("migration-toolkit").resolve(name);
+    }
+
+    @Test
+    public void hitTest() {
+        previousBuild();
+
+        ChecksumCache cache = ChecksumCache.load(output);
+        ChecksumCache.Cached cached = cache.get(URI, SCRIPT, CONTENT.length, MODIFIED, ChecksumAlgorithm.CRC32);
+        Assertions.assertNotNull(cached);
+        Assertions.assertEquals(CHECKSUM, cached.checksum);
+        Assertions.assertArrayEquals(CONTENT, cached.data);
+        Assertions.assertEquals(1, cache.hits());
+    }
+
+    @Test
+    public void changedScriptTest() {
+        previousBuild();
+
+        ChecksumCache cache = ChecksumCache.load(output);
+        // the changed content has the other size
+        Assertions.assertNull(cache.get(URI, SCRIPT, CONTENT.length + 1, MODIFIED, ChecksumAlgorithm.CRC32));
+        Assertions.assertNull(cache.get(URI, SCRIPT, CONTENT.length, MODIFIED + 1, ChecksumAlgorithm.CRC32));
+        Assertions.assertNull(cache.get(URI, SCRIPT, CONTENT.length, MODIFIED, ChecksumAlgorithm.CRC32C));
+        Assertions.assertNull(cache.get("file:/app/other/V1__init.sql", SCRIPT, CONTENT.length, MODIFIED, ChecksumAlgorithm.CRC32));
+        Assertions.assertEquals(0, cache.hits());
+    }
+
+    @Test
+    public void replacedEntryTest() {
+        previousBuild();
+
+        // the changed script is checksummed again and replaces the entry
+        ChecksumCache cache = ChecksumCache.load(output);
+        Assertions.assertNull(cache.get(URI, SCRIPT, CONTENT.length, MODIFIED + 1, ChecksumAlgorithm.CRC32));
+        cache.put(URI, SCRIPT, CONTENT.length, MODIFIED + 1, ChecksumAlgorithm.CRC32, 7L);
+        cache.save(ScriptBundle.write(Map.of(SCRIPT, CONTENT), false));
+
+        ChecksumCache next = ChecksumCache.load(output);
+        Assertions.assertNull(next.get(URI, SCRIPT, CONTENT.length, MODIFIED, ChecksumAlgorithm.CRC32));
+        Assertions.assertEquals(7L, next.get(URI, SCRIPT, CONTENT.length, MODIFIED + 1, ChecksumAlgorithm.CRC32).checksum);
+    }
+
+    @Test
+    public void corruptManifestTest() throws IOException {
+        previousBuild();
+        Files.write(file("checksums.manifest"), "24\tnot a time\tCRC32\t42\tdb/migration/V1__init.sql\tfile:/x\n"
+                .getBytes(StandardCharsets.UTF_8));
+
+        ChecksumCache cache = ChecksumCache.load(output);
+        Assertions.assertNull(cache.get(URI, SCRIPT, CONTENT.length, MODIFIED, ChecksumAlgorithm.CRC32));
+
+        // the next build writes the cache again
+        cache.put(URI, SCRIPT, CONTENT.length, MODIFIED, ChecksumAlgorithm.CRC32, CHECKSUM);
+        cache.save(ScriptBundle.write(Map.of(SCRIPT, CONTENT), true));
+        Assertions.assertNotNull(ChecksumCache.load(output).get(URI, SCRIPT, CONTENT.length, MODIFIED, ChecksumAlgorithm.CRC32));
+    }
+
+    @Test
+    public void corruptBundleTest() throws IOException {
+        previousBuild();
+        Files.write(file("scripts.bundle"), new byte[]{1, 2, 3});
+
+        Assertions.assertNull(ChecksumCache.load(output).get(URI, SCRIPT, CONTENT.length, MODIFIED, ChecksumAlgorithm.CRC32));
+    }
+
+    @Test
+    public void missingManifestTest() throws IOException {
+        previousBuild();
+        Files.delete(file("checksums.manifest"));
+
+        Assertions.assertNull(ChecksumCache.load(output).get(URI, SCRIPT, CONTENT.length, MODIFIED, ChecksumAlgorithm.CRC32));
+    }
+
+    @Test
+    public void disabledTest() {
+        ChecksumCache cache = ChecksumCache.load(null);
+        cache.put(URI, SCRIPT, CONTENT.length, MODIFIED, ChecksumAlgorithm.CRC32, CHECKSUM);
+        cache.save(ScriptBundle.write(Map.of(SCRIPT, CONTENT), true));
+
+        Assertions.assertNull(cache.get(URI, SCRIPT, CONTENT.length, MODIFIED, ChecksumAlgorithm.CRC32));
+        Assertions.assertEquals(0, cache.hits());
+    }
+}
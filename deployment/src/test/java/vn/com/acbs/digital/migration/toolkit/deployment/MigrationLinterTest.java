@@ -0,0 +1,97 @@
+/*
+ * Copyright 2020 lorislab.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vn.com.acbs.digital.migration.toolkit.deployment;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import vn.com.acbs.digital.migration.toolkit.models.Resource;
+import vn.com.acbs.digital.migration.toolkit.models.ResourceLoader;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class MigrationLinterTest {
+
+    private static List<MigrationLinter.Rule> lint(String sql) {
+        return lint(sql, true);
+    }
+
+    private static List<MigrationLinter.Rule> lint(String sql, boolean transactional) {
+        Resource resource = ResourceLoader.createFrom("V1__lint.sql");
+        resource.transactional = transactional;
+        return MigrationLinter.lint(resource, sql.getBytes(StandardCharsets.UTF_8)).stream()
+                .map(f -> f.rule).collect(Collectors.toList());
+    }
+
+    @Test
+    public void createIndexTest() {
+        Assertions.assertEquals(List.of(MigrationLinter.Rule.CREATE_INDEX), lint("CREATE INDEX idx ON orders (id);"));
+        Assertions.assertEquals(List.of(MigrationLinter.Rule.CREATE_INDEX), lint("create unique index on public.\"Orders\" using btree (id);"));
+        Assertions.assertEquals(List.of(), lint("CREATE INDEX CONCURRENTLY idx ON orders (id);", false));
+        Assertions.assertEquals(List.of(MigrationLinter.Rule.CONCURRENTLY_IN_TRANSACTION), lint("CREATE INDEX CONCURRENTLY idx ON orders (id);"));
+        // the new table is empty
+        Assertions.assertEquals(List.of(), lint("CREATE TABLE IF NOT EXISTS public.orders (id INT);\nCREATE INDEX idx ON orders (id);"));
+    }
+
+    @Test
+    public void alterTableTest() {
+        Assertions.assertEquals(List.of(MigrationLinter.Rule.ALTER_COLUMN_TYPE), lint("ALTER TABLE orders ALTER COLUMN amount TYPE NUMERIC(19, 2);"));
+        Assertions.assertEquals(List.of(MigrationLinter.Rule.ALTER_COLUMN_TYPE), lint("ALTER TABLE orders ALTER amount SET DATA TYPE BIGINT;"));
+        Assertions.assertEquals(List.of(MigrationLinter.Rule.VOLATILE_DEFAULT), lint("ALTER TABLE orders ADD COLUMN uid UUID DEFAULT gen_random_uuid();"));
+        Assertions.assertEquals(List.of(MigrationLinter.Rule.VOLATILE_DEFAULT), lint("ALTER TABLE orders ADD seq BIGSERIAL;"));
+        Assertions.assertEquals(List.of(), lint("ALTER TABLE orders ADD COLUMN created TIMESTAMP DEFAULT now(), ADD COLUMN note TEXT;"));
+        Assertions.assertEquals(List.of(MigrationLinter.Rule.ADD_CONSTRAINT),
+                lint("ALTER TABLE orders ADD CONSTRAINT orders_fk FOREIGN KEY (customer_id) REFERENCES customer (id);"));
+        Assertions.assertEquals(List.of(),
+                lint("ALTER TABLE orders ADD CONSTRAINT orders_fk FOREIGN KEY (customer_id) REFERENCES customer (id) NOT VALID;"));
+        Assertions.assertEquals(List.of(), lint("ALTER TABLE orders ADD CONSTRAINT orders_pk PRIMARY KEY USING INDEX orders_idx;"));
+        Assertions.assertEquals(List.of(), lint("CREATE TABLE orders (id INT);\nALTER TABLE orders ADD CONSTRAINT orders_pk PRIMARY KEY (id);"));
+    }
+
+    @Test
+    public void rewriteTest() {
+        Assertions.assertEquals(List.of(MigrationLinter.Rule.CLUSTER), lint("CLUSTER orders USING orders_idx;"));
+        Assertions.assertEquals(List.of(MigrationLinter.Rule.VACUUM_FULL), lint("VACUUM FULL orders;"));
+        Assertions.assertEquals(List.of(MigrationLinter.Rule.VACUUM_FULL), lint("VACUUM (FULL, ANALYZE) orders;"));
+        Assertions.assertEquals(List.of(), lint("VACUUM ANALYZE orders;"));
+    }
+
+    @Test
+    public void findingTest() {
+        Resource resource = ResourceLoader.createFrom("V1__lint.sql");
+        List<MigrationLinter.Finding> findings = MigrationLinter.lint(resource,
+                "-- comment\nCREATE TABLE t (id INT);\n\n/* rewrite */ CLUSTER   orders;".getBytes(StandardCharsets.UTF_8));
+        Assertions.assertEquals(1, findings.size());
+        Assertions.assertEquals(4, findings.get(0).line);
+        Assertions.assertEquals("CLUSTER orders", findings.get(0).statement);
+        Assertions.assertEquals("V1__lint.sql", findings.get(0).script);
+    }
+
+    @Test
+    public void commentTest() {
+        // the comment markers inside of the string literal do not start the comment
+        Assertions.assertEquals(List.of(MigrationLinter.Rule.ALTER_COLUMN_TYPE),
+                lint("ALTER TABLE orders ADD COLUMN note TEXT DEFAULT '--', ALTER COLUMN amount TYPE BIGINT;"));
+        Assertions.assertEquals(List.of(), lint("ALTER TABLE orders ADD COLUMN a INT /* DEFAULT random() */;"));
+    }
+
+    @Test
+    public void directiveTest() {
+        Assertions.assertEquals(List.of(), lint("-- toolkit:lint=false\nVACUUM FULL orders;"));
+        Assertions.assertTrue(ResourceLoader.createFrom("V1__lint.sql", "-- toolkit:lint=false".getBytes(StandardCharsets.UTF_8)).transactional);
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2020 lorislab.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vn.com.acbs.digital.migration.toolkit.deployment;
+
+import io.quarkus.deployment.pkg.builditem.OutputTargetBuildItem;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import vn.com.acbs.digital.migration.toolkit.ToolkitConfig;
+import vn.com.acbs.digital.migration.toolkit.models.ChecksumAlgorithm;
+import vn.com.acbs.digital.migration.toolkit.models.Resource;
+import vn.com.acbs.digital.migration.toolkit.models.ScriptBundle;
+import vn.com.acbs.digital.migration.toolkit.runtime.LintMode;
+import vn.com.acbs.digital.migration.toolkit.runtime.ToolkitBuildTimeConfig;
+import vn.com.acbs.digital.migration.toolkit.runtime.ToolkitRecorder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+
+public class ToolkitSqlClientProcessorTest {
+
+    @TempDir
+    Path output;
+
+    private byte[] bundle;
+
+    @AfterEach
+    public void clearRecorder() {
+        ToolkitRecorder.versionedMigrations = null;
+        ToolkitRecorder.repeatableMigrations = null;
+        ToolkitRecorder.baselineMigrations = null;
+        ToolkitRecorder.afterMigrationScripts = null;
+        ToolkitRecorder.repeatableDigest = null;
+        ToolkitRecorder.checksumAlgorithm = null;
+        ToolkitRecorder.migrationPlan = null;
+    }
+
+    private static long checksum(ChecksumAlgorithm algorithm, String script) throws IOException {
+        try (InputStream in = Thread.currentThread().getContextClassLoader().getResourceAsStream(script)) {
+            return algorithm.checksum(in.readAllBytes());
+        }
+    }
+
+    private void build(ChecksumAlgorithm algorithm) throws Exception {
+        ToolkitBuildTimeConfig config = ToolkitBuildTimeConfig.defaultConfig();
+        config.location = "db/checksum";
+        config.checksumAlgorithm = algorithm;
+        config.checksumCache = false;
+        config.lint = LintMode.NONE;
+        config.testDataScripts = new ArrayList<>(List.of(ToolkitBuildTimeConfig.DEFAULT_TEST_DATA_SCRIPTS));
+
+        ToolkitSqlClientProcessor processor = new ToolkitSqlClientProcessor();
+        processor.config = config;
+        processor.build(feature -> {}, new ToolkitRecorder(), resource -> {}, generated -> bundle = generated.getClassData(),
+                new OutputTargetBuildItem(output, "test", false, new Properties(), Optional.empty()));
+    }
+
+    @Test
+    public void crc32cTest() throws Exception {
+        build(ChecksumAlgorithm.CRC32C);
+
+        // the runtime checksums the history with the algorithm of the build
+        Assertions.assertEquals(ChecksumAlgorithm.CRC32C, ToolkitRecorder.checksumAlgorithm);
+        Resource versioned = ToolkitRecorder.versionedMigrations.get(0).resource;
+        Assertions.assertEquals(checksum(ChecksumAlgorithm.CRC32C, versioned.script), versioned.checksum);
+        Resource repeatable = ToolkitRecorder.repeatableMigrations.get(0);
+        Assertions.assertEquals(checksum(ChecksumAlgorithm.CRC32C, repeatable.script), repeatable.checksum);
+
+        ToolkitConfig toolkitConfig = ToolkitConfig.builder()
+                .migrationPlan(ToolkitRecorder.migrationPlan)
+                .checksumAlgorithm(ToolkitRecorder.checksumAlgorithm)
+                .build();
+        Assertions.assertEquals("SQL:CRC32C", toolkitConfig.getChecksumAlgorithm().type());
+    }
+
+    @Test
+    public void crc32Test() throws Exception {
+        build(ChecksumAlgorithm.CRC32);
+
+        Assertions.assertEquals(ChecksumAlgorithm.CRC32, ToolkitRecorder.checksumAlgorithm);
+        Resource versioned = ToolkitRecorder.versionedMigrations.get(0).resource;
+        Assertions.assertEquals(checksum(ChecksumAlgorithm.CRC32, versioned.script), versioned.checksum);
+    }
+
+    @Test
+    public void bundleIndexTest() throws Exception {
+        build(ChecksumAlgorithm.CRC32);
+
+        // the recorded migrations take the script by the position in the bundle
+        ScriptBundle scripts = ScriptBundle.read(ByteBuffer.wrap(bundle));
+        List<Resource> resources = List.of(ToolkitRecorder.versionedMigrations.get(0).resource,
+                ToolkitRecorder.repeatableMigrations.get(0));
+        for (Resource resource : resources) {
+            Assertions.assertTrue(resource.bundleIndex >= 0, resource::toString);
+            Assertions.assertEquals(scripts.content(resource.script), scripts.content(resource.bundleIndex));
+        }
+        Assertions.assertNotEquals(resources.get(0).bundleIndex, resources.get(1).bundleIndex);
+    }
+}
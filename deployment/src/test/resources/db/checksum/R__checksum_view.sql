@@ -0,0 +1 @@
+CREATE OR REPLACE VIEW checksum_view AS SELECT id FROM checksum_test;
@@ -0,0 +1 @@
+CREATE TABLE checksum_test (id BIGINT PRIMARY KEY);
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2020 lorislab.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vn.com.acbs.digital.migration.toolkit;
+
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Row;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import vn.com.acbs.digital.migration.toolkit.database.MigrationSession;
+import vn.com.acbs.digital.migration.toolkit.models.TenantMigrationResult;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Migrates the tenant schemas concurrently. Each schema is migrated on the own pool connection with the schema
+ * as the search path, so the schema has the own history table and migration lock. The failure of one schema
+ * does not stop the migration of the other schemas.
+ */
+public class TenantMigrationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(TenantMigrationRunner.class);
+
+    private final Pool client;
+
+    private final ToolkitConfig config;
+
+    private final int parallelism;
+
+    /**
+     * Creates the runner.
+     *
+     * @param client      the pool
+     * @param config      the configuration of the migration
+     * @param parallelism the maximum number of schemas migrated concurrently, it should not exceed the pool size
+     */
+    public TenantMigrationRunner(Pool client, ToolkitConfig config, int parallelism) {
+        if (client == null) {
+            throw new NullPointerException("Pool client is null!");
+        }
+        if (config == null) {
+            throw new NullPointerException("Configuration is null!");
+        }
+        this.client = client;
+        this.config = config;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    public TenantMigrationResult migration(List<String> schemas) {
+        return migrationAsync(schemas).await().indefinitely();
+    }
+
+    /**
+     * Migrates the schemas of the discovery query.
+     *
+     * @param discoveryQuery the query which returns the schemas in the first column
+     * @return the aggregated result
+     */
+    public Uni<TenantMigrationResult> migrationAsync(String discoveryQuery) {
+        return MigrationSession.open(client, session -> session.query(discoveryQuery))
+                .map(rows -> {
+                    List<String> schemas = new ArrayList<>(rows.size());
+                    for (Row row : rows) {
+                        schemas.add(row.getString(0));
+                    }
+                    return schemas;
+                })
+                .chain(this::migrationAsync);
+    }
+
+    /**
+     * Migrates the schemas.
+     *
+     * @param schemas the schemas
+     * @return the aggregated result
+     */
+    public Uni<TenantMigrationResult> migrationAsync(List<String> schemas) {
+        TenantMigrationResult result = new TenantMigrationResult();
+        log.info("Migrate {} schemas, parallelism: {}", schemas.size(), parallelism);
+        return Multi.createFrom().iterable(new LinkedHashSet<>(schemas))
+                .onItem().transformToUni(schema -> new Toolkit(client, config.forSchema(schema)).migrationAsync()
+                        .map(r -> {
+                            result.results.put(schema, r);
+                            return schema;
+                        })
+                        .onFailure().recoverWithItem(ex -> {
+                            log.error("Error migrate schema {}", schema, ex);
+                            result.failures.put(schema, ex);
+                            return schema;
+                        }))
+                .merge(parallelism)
+                .onItem().ignoreAsUni()
+                .replaceWith(result);
+    }
+}
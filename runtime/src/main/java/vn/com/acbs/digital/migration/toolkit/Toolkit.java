@@ -15,11 +15,12 @@
  */
 package vn.com.acbs.digital.migration.toolkit;
 
+import io.smallrye.mutiny.Uni;
 import io.vertx.mutiny.sqlclient.Pool;
 
 import vn.com.acbs.digital.migration.toolkit.database.Database;
 import vn.com.acbs.digital.migration.toolkit.database.PostgresDatabase;
-import vn.com.acbs.digital.migration.toolkit.models.Migration;
+import vn.com.acbs.digital.migration.toolkit.models.MigrationResult;
 
 public class Toolkit {
 
@@ -39,7 +40,7 @@ public class Toolkit {
         this.config = config;
         String clazz = client.getClass().getName();
         if (clazz.startsWith(PostgresDatabase.POOL)) {
-            database = new PostgresDatabase(config.getHistoryTable(), client);
+            database = new PostgresDatabase(client, config);
         } else {
             database = null;
         }
@@ -53,23 +54,35 @@ public class Toolkit {
     }
 
     public void testData() {
-        database.testData(config.getTestDataScripts());
+        testDataAsync().await().indefinitely();
     }
 
     public void clean() {
-        database.doClean();
+        cleanAsync().await().indefinitely();
     }
 
     public void migration() {
-        database.doMigration(config.getVersionedMigrations(), config.getRepeatableMigrations());
+        migrationAsync().await().indefinitely();
     }
 
     public String version() {
-        Migration migration = database.lastVersionedMigration();
-        if (migration != null) {
-            return migration.version;
-        }
-        return null;
+        return versionAsync().await().indefinitely();
+    }
+
+    public Uni<MigrationResult> testDataAsync() {
+        return database.testData(config.getTestDataScripts());
+    }
+
+    public Uni<MigrationResult> cleanAsync() {
+        return database.doClean();
+    }
+
+    public Uni<MigrationResult> migrationAsync() {
+        return database.doMigration();
+    }
+
+    public Uni<String> versionAsync() {
+        return database.lastVersionedMigration().map(migration -> migration != null ? migration.version : null);
     }
 
 }
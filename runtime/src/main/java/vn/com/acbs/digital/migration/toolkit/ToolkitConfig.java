@@ -1,39 +1,224 @@
 package vn.com.acbs.digital.migration.toolkit;
 
 
+import vn.com.acbs.digital.migration.toolkit.database.LockStrategy;
+import vn.com.acbs.digital.migration.toolkit.database.StandardLockStrategy;
+import vn.com.acbs.digital.migration.toolkit.metrics.MigrationMetrics;
+import vn.com.acbs.digital.migration.toolkit.models.ChecksumAlgorithm;
+import vn.com.acbs.digital.migration.toolkit.models.MigrationPlan;
 import vn.com.acbs.digital.migration.toolkit.models.Resource;
+import vn.com.acbs.digital.migration.toolkit.models.ResourceLoader;
+import vn.com.acbs.digital.migration.toolkit.models.Version;
 import vn.com.acbs.digital.migration.toolkit.models.VersionedMigration;
 
+import java.time.Duration;
 import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
 public class ToolkitConfig {
 
+    public static final Duration DEFAULT_LOCK_MAX_WAIT = Duration.ofMinutes(5);
+
     private List<VersionedMigration> versionedMigrations = Collections.emptyList();
 
     private List<Resource> repeatableMigrations = Collections.emptyList();
 
+    private List<VersionedMigration> baselineMigrations = Collections.emptyList();
+
     private List<String> testDataScripts = Collections.emptyList();
 
     private String historyTable;
 
+    private String schema;
+
+    private String repeatableDigest;
+
+    private MigrationPlan migrationPlan;
+
+    private int groupCommitSize = 1;
+
+    private int pipeliningLimit = 256;
+
+    private int testDataBatchSize = 1000;
+
+    private boolean cleanDropSchema;
+
+    private ChecksumAlgorithm checksumAlgorithm = ChecksumAlgorithm.CRC32;
+
+    private int testDataParallelism = 1;
+
+    private MigrationMetrics metrics = MigrationMetrics.NOOP;
+
+    private LockStrategy lockStrategy = StandardLockStrategy.BLOCKING;
+
+    private Duration lockMaxWait = DEFAULT_LOCK_MAX_WAIT;
+
+    private Duration lockTimeout = Duration.ZERO;
+
+    private Duration statementTimeout = Duration.ZERO;
+
+    private Duration lockRetryDeadline = Duration.ZERO;
+
+    private boolean fastBootstrap;
+
+    private boolean fastBootstrapDeferIndexes;
+
     public String getHistoryTable() {
         return historyTable;
     }
 
+    /**
+     * Gets the schema of the migration. The migration runs with the schema as the search path.
+     *
+     * @return the schema or {@code null} to use the search path of the pool connection
+     */
+    public String getSchema() {
+        return schema;
+    }
+
+    public int getGroupCommitSize() {
+        return groupCommitSize;
+    }
+
+    public int getPipeliningLimit() {
+        return pipeliningLimit;
+    }
+
+    public ChecksumAlgorithm getChecksumAlgorithm() {
+        return checksumAlgorithm;
+    }
+
+    public boolean isCleanDropSchema() {
+        return cleanDropSchema;
+    }
+
+    public int getTestDataBatchSize() {
+        return testDataBatchSize;
+    }
+
+    public int getTestDataParallelism() {
+        return testDataParallelism;
+    }
+
+    public LockStrategy getLockStrategy() {
+        return lockStrategy;
+    }
+
+    public Duration getLockMaxWait() {
+        return lockMaxWait;
+    }
+
+    /**
+     * Gets the lock timeout of the migration scripts.
+     *
+     * @return the lock timeout, {@link Duration#ZERO} for the default of the database
+     */
+    public Duration getLockTimeout() {
+        return lockTimeout;
+    }
+
+    /**
+     * Gets the statement timeout of the migration scripts.
+     *
+     * @return the statement timeout, {@link Duration#ZERO} for the default of the database
+     */
+    public Duration getStatementTimeout() {
+        return statementTimeout;
+    }
+
+    /**
+     * Gets the time to retry the migration script which failed on the lock timeout.
+     *
+     * @return the retry deadline, {@link Duration#ZERO} to fail without retry
+     */
+    public Duration getLockRetryDeadline() {
+        return lockRetryDeadline;
+    }
+
+    /**
+     * Gets the fast bootstrap mode of the throwaway database.
+     */
+    public boolean isFastBootstrap() {
+        return fastBootstrap;
+    }
+
+    /**
+     * Gets the deferred creation of the indexes in the test data loads of the fast bootstrap mode.
+     */
+    public boolean isFastBootstrapDeferIndexes() {
+        return fastBootstrap && fastBootstrapDeferIndexes;
+    }
+
+    public MigrationMetrics getMetrics() {
+        return metrics;
+    }
+
     public List<Resource> getRepeatableMigrations() {
-        return repeatableMigrations;
+        return migrationPlan.getRepeatable();
     }
 
     public List<VersionedMigration> getVersionedMigrations() {
-        return versionedMigrations;
+        return migrationPlan.getVersioned();
+    }
+
+    public MigrationPlan getMigrationPlan() {
+        return migrationPlan;
+    }
+
+    /**
+     * Gets the highest version of the versioned migrations.
+     *
+     * @return the highest version or {@code null} if there is no versioned migration
+     */
+    public Version getLatestVersion() {
+        return migrationPlan.getLatestVersion();
+    }
+
+    /**
+     * Gets the digest of the repeatable migrations, computed at build time or on the first use.
+     */
+    public String getRepeatableDigest() {
+        if (repeatableDigest == null) {
+            repeatableDigest = ResourceLoader.repeatableDigest(migrationPlan.getRepeatable());
+        }
+        return repeatableDigest;
     }
 
     public List<String> getTestDataScripts() {
         return testDataScripts;
     }
 
+    /**
+     * Creates the copy of this configuration for the schema.
+     */
+    public ToolkitConfig forSchema(String schema) {
+        ToolkitConfig result = new ToolkitConfig();
+        result.versionedMigrations = versionedMigrations;
+        result.repeatableMigrations = repeatableMigrations;
+        result.baselineMigrations = baselineMigrations;
+        result.testDataScripts = testDataScripts;
+        result.historyTable = historyTable;
+        result.schema = schema;
+        result.repeatableDigest = getRepeatableDigest();
+        result.migrationPlan = migrationPlan;
+        result.groupCommitSize = groupCommitSize;
+        result.pipeliningLimit = pipeliningLimit;
+        result.testDataBatchSize = testDataBatchSize;
+        result.cleanDropSchema = cleanDropSchema;
+        result.checksumAlgorithm = checksumAlgorithm;
+        result.testDataParallelism = testDataParallelism;
+        result.metrics = metrics.forSchema(schema);
+        result.lockStrategy = lockStrategy;
+        result.lockMaxWait = lockMaxWait;
+        result.lockTimeout = lockTimeout;
+        result.statementTimeout = statementTimeout;
+        result.lockRetryDeadline = lockRetryDeadline;
+        result.fastBootstrap = fastBootstrap;
+        result.fastBootstrapDeferIndexes = fastBootstrapDeferIndexes;
+        return result;
+    }
+
     public static ToolkitConfigBuilder builder() {
         return new ToolkitConfigBuilder();
     }
@@ -47,6 +232,123 @@ public class ToolkitConfig {
             return this;
         }
 
+        public ToolkitConfigBuilder schema(String schema) {
+            config.schema = schema;
+            return this;
+        }
+
+        public ToolkitConfigBuilder repeatableDigest(String digest) {
+            config.repeatableDigest = digest;
+            return this;
+        }
+
+        public ToolkitConfigBuilder groupCommitSize(int size) {
+            config.groupCommitSize = size;
+            return this;
+        }
+
+        public ToolkitConfigBuilder pipeliningLimit(int limit) {
+            config.pipeliningLimit = limit;
+            return this;
+        }
+
+        public ToolkitConfigBuilder checksumAlgorithm(ChecksumAlgorithm algorithm) {
+            if (algorithm != null) {
+                config.checksumAlgorithm = algorithm;
+            }
+            return this;
+        }
+
+        public ToolkitConfigBuilder cleanDropSchema(boolean dropSchema) {
+            config.cleanDropSchema = dropSchema;
+            return this;
+        }
+
+        public ToolkitConfigBuilder testDataBatchSize(int size) {
+            config.testDataBatchSize = size;
+            return this;
+        }
+
+        public ToolkitConfigBuilder testDataParallelism(int parallelism) {
+            config.testDataParallelism = parallelism;
+            return this;
+        }
+
+        public ToolkitConfigBuilder lockStrategy(LockStrategy strategy) {
+            if (strategy != null) {
+                config.lockStrategy = strategy;
+            }
+            return this;
+        }
+
+        /**
+         * Sets the maximum time to wait for the migration lock.
+         *
+         * @param maxWait the maximum time, {@link Duration#ZERO} to wait without limit
+         */
+        public ToolkitConfigBuilder lockMaxWait(Duration maxWait) {
+            if (maxWait != null) {
+                config.lockMaxWait = maxWait;
+            }
+            return this;
+        }
+
+        /**
+         * Sets the lock timeout of each migration script.
+         *
+         * @param timeout the lock timeout, {@link Duration#ZERO} for the default of the database
+         */
+        public ToolkitConfigBuilder lockTimeout(Duration timeout) {
+            if (timeout != null) {
+                config.lockTimeout = timeout;
+            }
+            return this;
+        }
+
+        /**
+         * Sets the statement timeout of each migration script.
+         *
+         * @param timeout the statement timeout, {@link Duration#ZERO} for the default of the database
+         */
+        public ToolkitConfigBuilder statementTimeout(Duration timeout) {
+            if (timeout != null) {
+                config.statementTimeout = timeout;
+            }
+            return this;
+        }
+
+        /**
+         * Sets the time to retry the migration script which failed on the lock timeout.
+         *
+         * @param deadline the retry deadline, {@link Duration#ZERO} to fail without retry
+         */
+        public ToolkitConfigBuilder lockRetryDeadline(Duration deadline) {
+            if (deadline != null) {
+                config.lockRetryDeadline = deadline;
+            }
+            return this;
+        }
+
+        public ToolkitConfigBuilder fastBootstrap(boolean enabled) {
+            config.fastBootstrap = enabled;
+            return this;
+        }
+
+        /**
+         * Sets the deferred creation of the indexes in the test data loads of the fast bootstrap mode.
+         */
+        public ToolkitConfigBuilder fastBootstrapDeferIndexes(boolean deferIndexes) {
+            config.fastBootstrapDeferIndexes = deferIndexes;
+            return this;
+        }
+
+        public ToolkitConfigBuilder metrics(MigrationMetrics metrics) {
+            if (metrics != null) {
+                config.metrics = metrics;
+            }
+            return this;
+        }
+
         public ToolkitConfigBuilder versionedMigrations(List<VersionedMigration> resources) {
             if (resources != null) {
                 config.versionedMigrations = resources;
@@ -54,6 +356,16 @@ public class ToolkitConfig {
             return this;
         }
 
+        /**
+         * Sets the baseline scripts applied on the empty database instead of the versioned migrations they cover.
+         */
+        public ToolkitConfigBuilder baselineMigrations(List<VersionedMigration> resources) {
+            if (resources != null) {
+                config.baselineMigrations = resources;
+            }
+            return this;
+        }
+
         public ToolkitConfigBuilder repeatableMigrations(List<Resource> resources) {
             if (resources != null) {
                 config.repeatableMigrations = resources;
@@ -61,6 +373,15 @@ public class ToolkitConfig {
             return this;
         }
 
+        /**
+         * Sets the migration plan created at the application start. The plan takes precedence over
+         * the versioned and repeatable migrations lists.
+         */
+        public ToolkitConfigBuilder migrationPlan(MigrationPlan plan) {
+            config.migrationPlan = plan;
+            return this;
+        }
+
         public ToolkitConfigBuilder afterMigrationScripts(List<String> resources) {
             if (resources != null) {
                 config.testDataScripts = resources;
@@ -79,6 +400,9 @@ public class ToolkitConfig {
         }
 
         public ToolkitConfig build() {
+            if (config.migrationPlan == null) {
+                config.migrationPlan = MigrationPlan.of(config.versionedMigrations, config.repeatableMigrations, config.baselineMigrations);
+            }
             return config;
         }
     }
@@ -1,11 +1,22 @@
 package vn.com.acbs.digital.migration.toolkit.database;
 
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
 import io.vertx.mutiny.sqlclient.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import vn.com.acbs.digital.migration.toolkit.ToolkitConfig;
+import vn.com.acbs.digital.migration.toolkit.jfr.*;
+import vn.com.acbs.digital.migration.toolkit.metrics.MigrationMetrics;
 import vn.com.acbs.digital.migration.toolkit.models.*;
 
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 public abstract class Database {
@@ -16,238 +27,884 @@ public abstract class Database {
 
     protected final String table;
 
-    private String currentUser;
+    protected final ToolkitConfig config;
 
-    public Database(final String table, final Pool client) {
-        this.client = client;
-        this.table = table;
-    }
+    protected final MigrationMetrics metrics;
 
-    protected abstract void cleanSchema();
+    private String currentUser;
 
-    protected abstract String historyTableSql();
+    private String insertMigrationSql;
 
-    protected abstract Boolean tryLock();
+    public Database(final Pool client, final ToolkitConfig config) {
+        this.client = client;
+        this.config = config;
+        // the search path of the tenant schema ends with the public schema, so the history table is qualified
+        this.table = config.getSchema() == null ? config.getHistoryTable()
+                : quoteIdentifier(config.getSchema()) + "." + config.getHistoryTable();
+        this.metrics = config.getMetrics();
+    }
 
-    protected abstract void unlock();
+    protected static String quoteIdentifier(String name) {
+        return '"' + name.replace("\"", "\"\"") + '"';
+    }
 
-    protected abstract boolean checkMigrationTable();
+    protected abstract Uni<Void> cleanSchema(MigrationSession session);
 
-    protected abstract String getCurrentUser();
+    protected abstract String historyTableSql();
 
+    protected abstract Uni<Boolean> tryLock(MigrationSession session);
+
+    /**
+     * Waits for the lock on the server.
+     *
+     * @param timeout the maximum time to wait, {@link Duration#ZERO} to wait without limit
+     * @return {@code true} if the lock is acquired, {@code false} if the timeout elapsed
+     */
+    protected abstract Uni<Boolean> waitLock(MigrationSession session, Duration timeout);
+
+    protected abstract Uni<Void> unlock(MigrationSession session);
+
+    /**
+     * Sets the schema as the search path of the session.
+     */
+    protected abstract Uni<Void> setSearchPath(MigrationSession session, String schema);
+
+    /**
+     * Resets the search path of the session to the default of the connection.
+     */
+    protected abstract Uni<Void> resetSearchPath(MigrationSession session);
+
+    /**
+     * Gets the invalid indexes of the current schema, an index stays invalid after the failed concurrent build.
+     */
+    protected abstract Uni<List<String>> invalidIndexes(MigrationSession session);
+
+    /**
+     * Drops the index without locking the table.
+     */
+    protected abstract Uni<Void> dropIndex(MigrationSession session, String index);
+
+    /**
+     * Sets the lock and the statement timeouts of the session.
+     *
+     * @param lockTimeout      the lock timeout in milliseconds, {@code null} to keep the current value
+     * @param statementTimeout the statement timeout in milliseconds, {@code null} to keep the current value
+     * @param local            {@code true} to set the timeouts for the current transaction only
+     */
+    protected abstract Uni<Void> setTimeouts(MigrationSession session, Long lockTimeout, Long statementTimeout, boolean local);
+
+    /**
+     * Resets the lock and the statement timeouts of the session to the default of the connection.
+     */
+    protected abstract Uni<Void> resetTimeouts(MigrationSession session);
+
+    /**
+     * Checks if the error is the timeout waiting for the lock of the database object.
+     *
+     * @return {@code true} for the lock timeout
+     */
+    protected abstract boolean isLockTimeout(Throwable ex);
+
+    /**
+     * Sets the session settings of the fast bootstrap mode which trade the durability for the speed.
+     */
+    protected abstract Uni<Void> setBootstrapSettings(MigrationSession session);
+
+    /**
+     * Resets the session settings of the fast bootstrap mode to the default of the connection.
+     */
+    protected abstract Uni<Void> resetBootstrapSettings(MigrationSession session);
+
+    /**
+     * Gets the indexes and the constraints of the table which can be created after the data load.
+     */
+    protected abstract Uni<List<DeferredObject>> deferredObjects(MigrationSession session, String table);
+
+    /**
+     * Loads the state of the history table with one query.
+     */
+    protected abstract Uni<HistoryState> historyState(MigrationSession session);
+
+    protected abstract Uni<String> getCurrentUser(MigrationSession session);
+
+    /**
+     * Gets the statement which inserts the history row or updates the type, checksum, execution time and installed by
+     * of the existing history row with the same id.
+     */
     protected abstract String getInsertMigrationSQL();
 
-    public void testData(List<String> testDataScripts) {
+    /**
+     * Creates the insert statement for the columns of the data file. Each parameter is bound as text
+     * and converted to the type of the column.
+     */
+    protected abstract Uni<String> dataInsertSql(MigrationSession session, String table, List<String> columns);
+
+    public Uni<MigrationResult> testData(List<String> testDataScripts) {
+        MigrationResult result = new MigrationResult();
         if (testDataScripts == null || testDataScripts.isEmpty()) {
             log.warn("Test data scripts is empty!");
-            return;
+            return Uni.createFrom().item(result);
         }
         log.info("Execute test data scripts");
+        return MigrationSession.open(client, session -> bootstrap(session, () -> sequentially(testDataGroups(testDataScripts), group -> {
+                    if (CsvReader.isDataFile(group.get(0))) {
+                        return loadData(session, group, result);
+                    }
+                    return testData(session, group.get(0), result);
+                })))
+                .replaceWith(result);
+    }
+
+    /**
+     * Groups the consecutive data files, each script is the own group.
+     */
+    private static List<List<String>> testDataGroups(List<String> testDataScripts) {
+        List<List<String>> result = new ArrayList<>();
+        List<String> data = null;
         for (String resource : testDataScripts) {
-            String sql = ResourceLoader.loadResource(resource);
-            if (sql == null || sql.isEmpty()) {
-                log.warn("Skip empty test data scripts. Resource: " + resource);
+            if (CsvReader.isDataFile(resource)) {
+                if (data == null) {
+                    data = new ArrayList<>();
+                    result.add(data);
+                }
+                data.add(resource);
             } else {
-                Transaction tx = null;
-                try {
-                    // create transaction
-                    tx = client.getConnectionAndAwait().beginAndAwait();
+                data = null;
+                result.add(List.of(resource));
+            }
+        }
+        return result;
+    }
 
-                    // execute SQL script
-                    log.info("Script {}", resource);
-                    queryAndAwait(client, sql);
-
-                    // commit
-                    tx.commitAndAwait();
-                } catch (Exception ex) {
-                    ex.printStackTrace();
-                    if (tx != null) {
-                        tx.rollbackAndAwait();
+    /**
+     * Loads the consecutive data files. With the test data parallelism the files are loaded
+     * concurrently, each on the own pool connection.
+     */
+    private Uni<Void> loadData(MigrationSession session, List<String> files, MigrationResult result) {
+        int parallelism = config.getTestDataParallelism();
+        if (parallelism <= 1 || files.size() == 1) {
+            return sequentially(files, file -> loadData(session, file).invoke(() -> result.scripts.add(file)));
+        }
+        return Multi.createFrom().iterable(files)
+                .onItem().transformToUni(file -> MigrationSession.open(client, s -> bootstrap(s, () -> loadData(s, file))).replaceWith(file))
+                .merge(parallelism)
+                .collect().asList()
+                .invoke(result.scripts::addAll)
+                .replaceWithVoid();
+    }
+
+    /**
+     * Loads the data file into the table in one transaction. The first record of the file contains
+     * the column names, the records are inserted in batches of the test data batch size.
+     */
+    protected Uni<Void> loadData(MigrationSession session, String file) {
+        ScriptSource source = ScriptSource.open(file, config.getChecksumAlgorithm());
+        if (source == null || source.isEmpty()) {
+            log.warn("Skip empty test data file. Resource: " + file);
+            return Uni.createFrom().voidItem();
+        }
+        String table = CsvReader.table(file);
+        CsvReader reader = new CsvReader(source.reader(), CsvReader.delimiter(file));
+        log.info("Data {} into table {}", file, table);
+        TestDataScriptExecuteEvent event = new TestDataScriptExecuteEvent();
+        event.begin();
+        long serverTime = session.serverTime();
+        return session.transaction(tx -> Uni.createFrom().item(() -> reader.hasNext() ? reader.next() : null)
+                        .runSubscriptionOn(Infrastructure.getDefaultWorkerPool())
+                        .chain(header -> {
+                            if (header == null) {
+                                return Uni.createFrom().item(0L);
+                            }
+                            return deferIndexes(tx, table, () -> dataInsertSql(tx, table, Arrays.asList(header))
+                                    .chain(sql -> loadBatches(tx, sql, reader, header.length, 1)));
+                        }))
+                .onTermination().invoke((records, ex, cancelled) -> {
+                    event.end();
+                    if (event.shouldCommit()) {
+                        script(event, source, ex == null && !cancelled);
+                        event.statements = records == null ? 0 : records;
+                        commit(event, session, serverTime);
                     }
-                    throw new IllegalStateException("Error execute test data scripts! Resource:" + resource, ex);
-                }
+                })
+                .eventually(source::close)
+                .replaceWithVoid()
+                .onFailure().transform(ex -> {
+                    log.error("Error load test data! Resource: {}", file, ex);
+                    return new IllegalStateException("Error load test data! Resource:" + file, ex);
+                });
+    }
+
+    /**
+     * Drops the deferred indexes and constraints of the table before the load and creates them after it.
+     */
+    private <T> Uni<T> deferIndexes(MigrationSession tx, String table, Supplier<Uni<T>> load) {
+        if (!config.isFastBootstrapDeferIndexes()) {
+            return load.get();
+        }
+        return deferredObjects(tx, table).chain(objects -> {
+            if (objects.isEmpty()) {
+                return load.get();
             }
+            log.info("Defer {} indexes and constraints of the table {}", objects.size(), table);
+            return tx.query(objects.stream().map(o -> o.drop).collect(Collectors.joining(";\n")))
+                    .chain(() -> load.get())
+                    .call(() -> tx.query(objects.stream().map(o -> o.create).collect(Collectors.joining(";\n"))));
+        });
+    }
+
+    /**
+     * Loads the remaining records of the data file.
+     */
+    private Uni<Long> loadBatches(MigrationSession tx, String sql, CsvReader reader, int columns, long record) {
+        int size = Math.max(1, config.getTestDataBatchSize());
+        // read the next batch outside of the event loop
+        return Uni.createFrom().item(() -> {
+                    List<Tuple> batch = new ArrayList<>(size);
+                    while (batch.size() < size && reader.hasNext()) {
+                        String[] values = reader.next();
+                        if (values.length != columns) {
+                            throw new IllegalStateException("Wrong number of values in the record " + (record + batch.size())
+                                    + ". Expected: " + columns + ", found: " + values.length);
+                        }
+                        batch.add(Tuple.wrap(new ArrayList<Object>(Arrays.asList(values))));
+                    }
+                    return batch;
+                })
+                .runSubscriptionOn(Infrastructure.getDefaultWorkerPool())
+                .chain(batch -> {
+                    if (batch.isEmpty()) {
+                        return Uni.createFrom().item(record - 1);
+                    }
+                    return tx.preparedBatch(sql, batch)
+                            .chain(() -> loadBatches(tx, sql, reader, columns, record + batch.size()));
+                });
+    }
+
+    private Uni<Void> testData(MigrationSession session, String resource, MigrationResult result) {
+        ScriptSource source = ScriptSource.open(resource, config.getChecksumAlgorithm());
+        if (source == null || source.isEmpty()) {
+            log.warn("Skip empty test data scripts. Resource: " + resource);
+            return Uni.createFrom().voidItem();
         }
+        TestDataScriptExecuteEvent event = new TestDataScriptExecuteEvent();
+        event.begin();
+        long serverTime = session.serverTime();
+        return session.transaction(tx -> {
+                    // execute SQL script
+                    log.info("Script {}", resource);
+                    return executeScript(tx, source);
+                })
+                .onTermination().invoke((item, ex, cancelled) -> {
+                    event.end();
+                    if (event.shouldCommit()) {
+                        script(event, source, ex == null && !cancelled);
+                        commit(event, session, serverTime);
+                    }
+                })
+                .eventually(source::close)
+                .invoke(() -> result.scripts.add(resource))
+                .replaceWithVoid()
+                .onFailure().transform(ex -> {
+                    log.error("Error execute test data scripts! Resource: {}", resource, ex);
+                    return new IllegalStateException("Error execute test data scripts! Resource:" + resource, ex);
+                });
     }
 
-    public void doClean() {
+    public Uni<MigrationResult> doClean() {
         log.info("Clean database");
-        cleanSchema();
+        return MigrationSession.open(client, session -> bootstrap(session, () -> timed(() -> cleanSchema(session), metrics::clean)))
+                .replaceWith(MigrationResult::new);
     }
 
-    public void doMigration(List<VersionedMigration> versionedMigrations, List<Resource> repeatableMigrations) {
-        if (versionedMigrations == null || versionedMigrations.isEmpty()) {
-            return;
+    public Uni<MigrationResult> doMigration() {
+        MigrationResult result = new MigrationResult();
+        if (config.getMigrationPlan().isEmpty()) {
+            return Uni.createFrom().item(result);
         }
 
-        // check table
-        boolean te = checkMigrationTable();
-        if (te) {
-            // load latest migration
-            Migration latest = lastVersionedMigration();
-            if (latest != null) {
-                // filter resources
-                Version ver = Version.of(latest.version);
-                boolean exists = versionedMigrations.stream().anyMatch(ver::isLessThan);
-                // check the migration
-                if (!exists) {
-                    return;
-                }
+        return MigrationSession.open(client, metrics, session -> bootstrap(session, () -> inSchema(session, () -> lookupHistoryState(session).chain(state -> {
+            // check the migration without the lock
+            if (isUpToDate(state)) {
+                log.debug("Database is up to date. Version: {}", state.version);
+                MigrationPlan plan = config.getMigrationPlan();
+                metrics.pending(MigrationMetrics.VERSIONED, 0);
+                metrics.pending(MigrationMetrics.REPEATABLE, 0);
+                metrics.scriptsSkipped(MigrationMetrics.VERSIONED, plan.getVersioned().size());
+                metrics.scriptsSkipped(MigrationMetrics.REPEATABLE, plan.getRepeatable().size());
+                result.version = state.version;
+                return Uni.createFrom().item(result);
             }
+            return migrate(session, result);
+        })))).invoke(r -> metrics.version(r.version));
+    }
+
+    /**
+     * Runs the work with the fast bootstrap settings of the session if the mode is enabled. The settings
+     * are reset before the connection is returned to the pool.
+     */
+    private <T> Uni<T> bootstrap(MigrationSession session, Supplier<Uni<T>> work) {
+        if (!config.isFastBootstrap()) {
+            return work.get();
         }
+        return setBootstrapSettings(session)
+                .chain(() -> work.get())
+                .eventually(() -> resetBootstrapSettings(session));
+    }
 
-        try {
-            log.info("Migrate database");
+    /**
+     * Runs the work with the schema of the configuration as the search path of the session. The search
+     * path is reset before the connection is returned to the pool.
+     */
+    private <T> Uni<T> inSchema(MigrationSession session, Supplier<Uni<T>> work) {
+        String schema = config.getSchema();
+        if (schema == null) {
+            return work.get();
+        }
+        return setSearchPath(session, schema)
+                .chain(() -> work.get())
+                .eventually(() -> resetSearchPath(session));
+    }
 
-            // create lock
-            lock();
+    /**
+     * Checks the history state against the bundled migrations.
+     *
+     * @return {@code true} if there is no versioned migration to run and the repeatable migrations did not change
+     */
+    protected boolean isUpToDate(HistoryState state) {
+        if (!state.exists) {
+            return false;
+        }
+        Version latest = config.getLatestVersion();
+        if (latest != null && (state.version == null || latest.isBiggerThan(Version.of(state.version)))) {
+            return false;
+        }
+        return config.getRepeatableMigrations().isEmpty()
+                || Objects.equals(config.getRepeatableDigest(), state.repeatableDigest);
+    }
 
-            currentUser = getCurrentUser();
+    private Uni<MigrationResult> migrate(MigrationSession session, MigrationResult result) {
+        log.info("Migrate database");
 
-            Migration latest = null;
-            long id = 0;
+        // create lock
+        return timed(() -> lock(session), metrics::lockWait)
+                // load the history state again, other instance could migrate the database
+                .chain(() -> lookupHistoryState(session))
+                .chain(state -> {
+                    if (state.exists) {
+                        return Uni.createFrom().item(state);
+                    }
+                    // create migration table
+                    return session.query(historyTableSql())
+                            .chain(() -> getCurrentUser(session))
+                            .map(user -> {
+                                state.currentUser = user;
+                                return state;
+                            });
+                })
+                .invoke(state -> currentUser = state.currentUser)
+                .chain(state -> baseline(session, state, result))
+                .chain(state -> {
+                    MigrationPlan plan = config.getMigrationPlan();
+                    List<Migration> migrations = createMigrations(plan.pending(state.version), state.lastId + 1);
+                    metrics.pending(MigrationMetrics.VERSIONED, migrations.size());
+                    metrics.scriptsSkipped(MigrationMetrics.VERSIONED, plan.getVersioned().size() - migrations.size());
+                    long nextId = state.lastId + 1 + migrations.size();
+                    return versioned(session, migrations, state, result)
+                            .call(() -> repeatable(session, state, nextId, result));
+                })
+                .map(version -> {
+                    result.version = version;
+                    log.info("Database version: {}", result.version);
+                    return result;
+                })
+                // release lock
+                .eventually(() -> unlock(session)
+                        .onFailure().transform(e -> new IllegalStateException("Unable to release database lock", e)));
+    }
 
-            // check migration table
-            if (!te && !checkMigrationTable()) {
-                queryAndAwait(historyTableSql());
-            } else {
-                // load last migration
-                id = 1 + lastId();
-                latest = lastVersionedMigration();
+    /**
+     * Applies the baseline script on the empty database and records the versioned migrations it covers.
+     */
+    private Uni<HistoryState> baseline(MigrationSession session, HistoryState state, MigrationResult result) {
+        MigrationPlan plan = config.getMigrationPlan();
+        VersionedMigration baseline = plan.getBaseline();
+        if (baseline == null || state.lastId >= 0) {
+            return Uni.createFrom().item(state);
+        }
+        Migration migration = create(baseline.resource, state.lastId + 1);
+        migration.type = config.getChecksumAlgorithm().baselineType();
+        List<VersionedMigration> covered = plan.baselineCovered(migration);
+        log.info("Baseline {} of {} migrations", baseline.resource.script, covered.size());
+        HistoryBatch history = new HistoryBatch();
+        long id = migration.id + 1;
+        for (VersionedMigration m : covered) {
+            Migration row = create(m.resource, id++);
+            row.time = 0L;
+            row.installedBy = currentUser;
+            history.stamp(row);
+        }
+        long lastId = id - 1;
+        Function<MigrationSession, Uni<Void>> work = tx -> execute(tx, migration, history,
+                migration.transactional ? config.getPipeliningLimit() : 1)
+                .chain(() -> writeHistory(tx, history));
+        return (migration.transactional ? session.transaction(work) : work.apply(session))
+                .map(x -> {
+                    result.scripts.add(migration.script);
+                    state.version = baseline.value;
+                    state.lastId = lastId;
+                    return state;
+                })
+                .onFailure().transform(ex -> {
+                    log.error("Error execute baseline! Script: {}", migration.script, ex);
+                    return new IllegalStateException("Error execute baseline!", ex);
+                });
+    }
+
+    private Uni<String> versioned(MigrationSession session, List<Migration> migrations, HistoryState state, MigrationResult result) {
+        // start migration
+        if (migrations.isEmpty()) {
+            log.debug("No versioned migration to run!");
+            return Uni.createFrom().item(state.version);
+        }
+        return migrations(session, migrations, result).map(last -> last.version);
+    }
+
+    private Uni<Void> repeatable(MigrationSession session, HistoryState state, long id, MigrationResult result) {
+        // repeatable migration
+        List<Resource> repeatableMigrations = config.getRepeatableMigrations();
+        if (repeatableMigrations.isEmpty() || Objects.equals(config.getRepeatableDigest(), state.repeatableDigest)) {
+            metrics.pending(MigrationMetrics.REPEATABLE, 0);
+            metrics.scriptsSkipped(MigrationMetrics.REPEATABLE, repeatableMigrations.size());
+            return Uni.createFrom().voidItem();
+        }
+        return timed(() -> getAllRepeatableMigration(session), metrics::historyLookup)
+                .chain(rms -> restamp(session, repeatableMigrations, rms))
+                .chain(rms -> {
+            List<Migration> executeRepeatableMigrations = createRepeatableMigrations(id, repeatableMigrations, rms);
+            metrics.pending(MigrationMetrics.REPEATABLE, executeRepeatableMigrations.size());
+            metrics.scriptsSkipped(MigrationMetrics.REPEATABLE, repeatableMigrations.size() - executeRepeatableMigrations.size());
+            if (executeRepeatableMigrations.isEmpty()) {
+                log.debug("No repeatable migration to run!");
+                return Uni.createFrom().voidItem();
             }
+            return migrations(session, executeRepeatableMigrations, result).replaceWithVoid();
+        });
+    }
 
-            // filter resources
-            List<Migration> migrations = createMigrations(versionedMigrations, latest, id);
-
-            // start migration
-            if (!migrations.isEmpty()) {
-                latest = migrations(migrations);
-
-                // repeatable migration
-                if (repeatableMigrations != null && !repeatableMigrations.isEmpty()) {
-                    Map<String, Migration> rms = getAllRepeatableMigration();
-                    List<Migration> executeRepeatableMigrations = createRepeatableMigrations(latest, repeatableMigrations, rms);
-                    if (!executeRepeatableMigrations.isEmpty()) {
-                        migrations(executeRepeatableMigrations);
-                    } else {
-                        log.debug("No repeatable migration to run!");
+    /**
+     * Re-stamps the unchanged repeatable migrations recorded with the other checksum algorithm.
+     */
+    private Uni<Map<String, Migration>> restamp(MigrationSession session, List<Resource> repeatableMigrations, Map<String, Migration> rms) {
+        ChecksumAlgorithm algorithm = config.getChecksumAlgorithm();
+        List<Resource> resources = repeatableMigrations.stream()
+                .filter(rm -> {
+                    Migration m = rms.get(rm.description);
+                    return m != null && !rm.checksum.equals(m.checksum) && ChecksumAlgorithm.ofType(m.type) != algorithm;
+                })
+                .collect(Collectors.toList());
+        if (resources.isEmpty()) {
+            return Uni.createFrom().item(rms);
+        }
+        return Uni.createFrom().item(() -> {
+                    HistoryBatch history = new HistoryBatch();
+                    for (Resource rm : resources) {
+                        Migration m = rms.get(rm.description);
+                        if (m.checksum != null && m.checksum == checksum(rm.script, ChecksumAlgorithm.ofType(m.type))) {
+                            log.debug("Update checksum algorithm of the repeatable migration {} to {}", rm.script, algorithm);
+                            m.type = algorithm.type();
+                            m.checksum = rm.checksum;
+                            history.stamp(m);
+                        }
                     }
-                }
+                    return history;
+                })
+                .runSubscriptionOn(Infrastructure.getDefaultWorkerPool())
+                .chain(history -> history.rows.isEmpty()
+                        ? Uni.createFrom().voidItem()
+                        : session.transaction(tx -> writeHistory(tx, history)))
+                .replaceWith(rms);
+    }
 
-            } else {
-                log.warn("No versioned migration to run!");
+    private static long checksum(String script, ChecksumAlgorithm algorithm) {
+        try (ScriptSource source = ScriptSource.open(script, algorithm)) {
+            if (source == null) {
+                return 0;
             }
-
-            log.info("Database version: {}", latest != null ? latest.version : null);
-        } finally {
-            // release lock
-            try {
-                unlock();
-            } catch (Exception e) {
-                throw new IllegalStateException("Unable to release database lock", e);
-           }
+            source.readAll();
+            return source.getChecksum();
         }
     }
 
-    protected Migration migrations(List<Migration> migrations) {
-        Migration result = null;
+    protected Uni<Migration> migrations(MigrationSession session, List<Migration> migrations, MigrationResult result) {
         // start migration
-        for (Migration migration : migrations) {
-            migration(migration);
-            result = migration;
-        }
-        return result;
+        return sequentially(partition(migrations, config.getGroupCommitSize()), group -> group.size() == 1
+                        ? migration(session, group.get(0), result)
+                        : migrationGroup(session, group, result))
+                .replaceWith(migrations.get(migrations.size() - 1));
     }
 
-    protected void migration(Migration migration) {
-        String sql = ResourceLoader.loadResource(migration.script);
-        if (sql == null || sql.isEmpty()) {
-            log.warn("Skip empty migration resources " + migration.script);
-        } else {
-            Transaction tx = null;
-            try {
-                // begin transaction
-                tx = client.getConnectionAndAwait().beginAndAwait();
-
-                // start migration
-                log.info("Script {}", migration.script);
-                long start = System.currentTimeMillis();
-                queryAndAwait(client, sql);
-                long time = System.currentTimeMillis() - start;
-
-                // insert or update executed migration
-                if (migration.exists) {
-                    updateMigration(client, migration, time);
-                } else {
-                    insertMigration(client, migration, time);
-                }
+    /**
+     * Executes the consecutive migrations and their history rows in one transaction. If the group fails
+     * the migrations are executed again one per transaction to find the failing script.
+     */
+    protected Uni<Void> migrationGroup(MigrationSession session, List<Migration> group, MigrationResult result) {
+        HistoryBatch history = new HistoryBatch();
+        return session.transaction(tx -> sequentially(group, migration -> execute(tx, migration, history))
+                        .chain(() -> writeHistory(tx, history)))
+                .invoke(() -> applied(group.get(0), history, result))
+                .replaceWithVoid()
+                .onFailure().recoverWithUni(ex -> {
+                    log.warn("Error execute migration group {} - {}, fallback to one script per transaction",
+                            group.get(0).script, group.get(group.size() - 1).script, ex);
+                    return sequentially(group, migration -> migration(session, migration, result));
+                });
+    }
 
-                // commit
-                tx.commitAndAwait();
-            } catch (Exception ex) {
-                ex.printStackTrace();
-                if (tx != null) {
-                    tx.rollbackAndAwait();
-                }
-                throw new IllegalStateException("Error execute migration!", ex);
-            }
+    protected Uni<Void> migration(MigrationSession session, Migration migration, MigrationResult result) {
+        Uni<HistoryBatch> work;
+        if (migration.transactional) {
+            work = retry(migration, () -> {
+                HistoryBatch history = new HistoryBatch();
+                // begin transaction
+                return session.transaction(tx -> execute(tx, migration, history, config.getPipeliningLimit())
+                                .chain(() -> writeHistory(tx, history)))
+                        .replaceWith(history);
+            }, System.nanoTime(), StandardLockStrategy.BACKOFF_INITIAL_DELAY.toNanos());
+        } else {
+            // never retried, the statements before the failure are already committed
+            HistoryBatch history = new HistoryBatch();
+            work = autocommit(session, migration, history).replaceWith(history);
         }
+        return work
+                .invoke(history -> applied(migration, history, result))
+                .replaceWithVoid()
+                .onFailure().transform(ex -> {
+                    metrics.scriptFailed(MigrationMetrics.type(migration));
+                    log.error("Error execute migration! Script: {}", migration.script, ex);
+                    return new IllegalStateException("Error execute migration!", ex);
+                });
     }
 
-    protected void updateMigration(SqlClient tx, Migration migration, Long time) {
-        preparedQueryAndAwait(tx,
-                "UPDATE " + table + " SET checksum = $1, execution_time = $2, installed_by = $3 WHERE id=$4",
-                Tuple.of(migration.checksum, time, currentUser, migration.id));
+    /**
+     * Runs the transaction of the migration again if it failed on the lock timeout until the retry deadline.
+     * The delay between the attempts grows exponentially with the random jitter.
+     */
+    private <T> Uni<T> retry(Migration migration, Supplier<Uni<T>> work, long start, long delay) {
+        return Uni.createFrom().deferred(() -> work.get())
+                .onFailure(this::isLockTimeout).recoverWithUni(ex -> {
+                    Duration deadline = config.getLockRetryDeadline();
+                    long remaining = deadline.toNanos() - (System.nanoTime() - start);
+                    if (deadline.isZero() || remaining <= 0) {
+                        return Uni.createFrom().failure(ex);
+                    }
+                    long next = Math.min(StandardLockStrategy.jitter(delay), remaining);
+                    log.warn("Lock timeout of the migration {}, retry in {} ms", migration.script, TimeUnit.NANOSECONDS.toMillis(next));
+                    return Uni.createFrom().voidItem()
+                            .onItem().delayIt().by(Duration.ofNanos(next))
+                            .chain(() -> retry(migration, work, start, Math.min(delay * 2, StandardLockStrategy.BACKOFF_MAX_DELAY.toNanos())));
+                });
     }
 
+    /**
+     * Executes the migration outside of the transaction, one statement at a time. The invalid indexes
+     * of the failed script are dropped.
+     */
+    private Uni<Void> autocommit(MigrationSession session, Migration migration, HistoryBatch history) {
+        log.info("Script {} runs outside of the transaction", migration.script);
+        return invalidIndexes(session)
+                .chain(before -> execute(session, migration, history, 1)
+                        // the timeouts outside of the transaction are set for the session
+                        .eventually(() -> timeout(migration.lockTimeout, config.getLockTimeout()) == null
+                                && timeout(migration.statementTimeout, config.getStatementTimeout()) == null
+                                ? Uni.createFrom().voidItem()
+                                : resetTimeouts(session))
+                        .chain(() -> writeHistory(session, history))
+                        .onFailure().call(() -> dropInvalidIndexes(session, before)));
+    }
 
-    protected void insertMigration(SqlClient tx, Migration migration, Long time) {
-        preparedQueryAndAwait(tx, getInsertMigrationSQL(), Tuple.tuple(Arrays.asList(
-                migration.id, migration.version, migration.description, migration.type,
-                migration.script, migration.checksum, time, true, currentUser
-                ))
-        );
+    private Uni<Void> dropInvalidIndexes(MigrationSession session, List<String> before) {
+        return invalidIndexes(session)
+                .chain(after -> sequentially(after.stream().filter(index -> !before.contains(index)).collect(Collectors.toList()),
+                        index -> {
+                            log.warn("Drop invalid index {} of the failed migration", index);
+                            return dropIndex(session, index);
+                        }))
+                .onFailure().recoverWithUni(ex -> {
+                    log.error("Error drop the invalid indexes of the failed migration", ex);
+                    return Uni.createFrom().voidItem();
+                });
     }
 
-    protected void lock() {
-        int retries = 0;
-        while (!tryLock()) {
-            try {
-                Thread.sleep(100L);
-            } catch (InterruptedException e) {
-                throw new IllegalStateException("Interrupted lock", e);
-            }
+    /**
+     * Records the scripts of the committed transaction. The migrations of one transaction have the same type.
+     */
+    private void applied(Migration migration, HistoryBatch history, MigrationResult result) {
+        result.scripts.addAll(history.scripts);
+        metrics.scriptsApplied(MigrationMetrics.type(migration), history.scripts.size());
+    }
 
-            if (++retries >= 50) {
-                throw new IllegalStateException("Number of retries exceeded while attempting to acquire lock");
-            }
+    private Uni<Void> execute(MigrationSession tx, Migration migration, HistoryBatch history) {
+        return execute(tx, migration, history, config.getPipeliningLimit());
+    }
+
+    private Uni<Void> execute(MigrationSession tx, Migration migration, HistoryBatch history, int limit) {
+        ScriptSource source = ScriptSource.open(migration.script, migration.bundleIndex, config.getChecksumAlgorithm());
+        if (source == null || source.isEmpty()) {
+            log.warn("Skip empty migration resources " + migration.script);
+            metrics.scriptsSkipped(MigrationMetrics.type(migration), 1);
+            return Uni.createFrom().voidItem();
         }
+        // start migration
+        log.info("Script {}", migration.script);
+        MigrationScriptExecuteEvent event = new MigrationScriptExecuteEvent();
+        event.begin();
+        long serverTime = tx.serverTime();
+        long start = System.nanoTime();
+        return timeouts(tx, migration)
+                .chain(() -> executeScript(tx, source, limit))
+                .onTermination().invoke((item, ex, cancelled) -> {
+                    event.end();
+                    if (event.shouldCommit()) {
+                        script(event, source, ex == null && !cancelled);
+                        if (migration.checksum != null) {
+                            event.checksum = migration.checksum;
+                        }
+                        event.version = migration.version;
+                        commit(event, tx, serverTime);
+                    }
+                })
+                .eventually(source::close)
+                // insert or update executed migration at the end of the transaction
+                .invoke(() -> {
+                    long time = System.nanoTime() - start;
+                    metrics.scriptExecuted(MigrationMetrics.type(migration), time);
+                    history.add(migration, TimeUnit.NANOSECONDS.toMillis(time), currentUser);
+                })
+                .replaceWithVoid();
     }
 
-    protected Map<String, Migration> getAllRepeatableMigration() {
-        RowIterator<Row> it = queryAndAwait("SELECT * FROM " + table + " WHERE version IS NULL").iterator();
-        Map<String, Migration> result = new HashMap<>();
-        while (it.hasNext()) {
-            Migration m = map(it.next());
-            result.put(m.description, m);
+    /**
+     * Sets the timeouts of the script for the transaction or for the session if the script runs outside
+     * of the transaction. The timeout of the script directive overrides the timeout of the configuration.
+     */
+    private Uni<Void> timeouts(MigrationSession session, Migration migration) {
+        Long lockTimeout = timeout(migration.lockTimeout, config.getLockTimeout());
+        Long statementTimeout = timeout(migration.statementTimeout, config.getStatementTimeout());
+        if (lockTimeout == null && statementTimeout == null) {
+            return Uni.createFrom().voidItem();
         }
-        return result;
+        return setTimeouts(session, lockTimeout, statementTimeout, migration.transactional);
     }
 
-    protected long lastId() {
-        RowIterator<Row> it = queryAndAwait("SELECT id FROM " + table + " ORDER BY id DESC LIMIT 1").iterator();
-        if (it.hasNext()) {
-            return it.next().getLong("id");
+    private static Long timeout(Long script, Duration config) {
+        if (script != null) {
+            return script;
         }
-        return -1;
+        return config.isZero() ? null : config.toMillis();
     }
 
-    public Migration lastVersionedMigration() {
-        RowIterator<Row> it = queryAndAwait("SELECT * FROM " + table + " WHERE version IS NOT NULL ORDER BY id DESC LIMIT 1").iterator();
-        if (it.hasNext()) {
-            return map(it.next());
+    /**
+     * Executes the statements of the script pipelined in windows of the pipelining limit.
+     */
+    protected Uni<Void> executeScript(MigrationSession tx, ScriptSource source) {
+        return executeScript(tx, source, config.getPipeliningLimit());
+    }
+
+    /**
+     * Executes the statements of the script in windows of the limit.
+     */
+    protected Uni<Void> executeScript(MigrationSession tx, ScriptSource source, int limit) {
+        if (limit <= 0) {
+            return Uni.createFrom().item(source::readAll)
+                    .runSubscriptionOn(Infrastructure.getDefaultWorkerPool())
+                    .chain(tx::query)
+                    .replaceWithVoid();
+        }
+        return pipeline(tx, source.getScript(), source.statements(), limit)
+                .invoke(() -> log.debug("Script {} statements: {}, bytes: {}, checksum: {}",
+                        source.getScript(), source.getStatements(), source.getBytes(), source.getChecksum()));
+    }
+
+    private Uni<Void> pipeline(MigrationSession tx, String script, Iterator<SqlStatement> statements, int limit) {
+        // read the next window of statements outside of the event loop
+        return Uni.createFrom().item(() -> {
+                    List<SqlStatement> window = new ArrayList<>(limit);
+                    while (window.size() < limit && statements.hasNext()) {
+                        window.add(statements.next());
+                    }
+                    return window;
+                })
+                .runSubscriptionOn(Infrastructure.getDefaultWorkerPool())
+                .chain(window -> {
+                    if (window.isEmpty()) {
+                        return Uni.createFrom().voidItem();
+                    }
+                    List<Uni<?>> queries = new ArrayList<>(window.size());
+                    for (SqlStatement statement : window) {
+                        queries.add(tx.query(statement.sql)
+                                .onFailure().transform(ex -> new ScriptExecutionException(script, statement, ex)));
+                    }
+                    return Uni.combine().all().unis(queries).discardItems()
+                            .chain(() -> pipeline(tx, script, statements, limit));
+                });
+    }
+
+    /**
+     * Writes the collected history rows with one batch statement.
+     */
+    protected Uni<Void> writeHistory(MigrationSession tx, HistoryBatch history) {
+        if (history.rows.isEmpty()) {
+            return Uni.createFrom().voidItem();
         }
-        return null;
+        if (insertMigrationSql == null) {
+            insertMigrationSql = getInsertMigrationSQL();
+        }
+        HistoryWriteEvent event = new HistoryWriteEvent();
+        event.begin();
+        long serverTime = tx.serverTime();
+        return tx.preparedBatch(insertMigrationSql, history.rows)
+                .onTermination().invoke(() -> {
+                    event.end();
+                    if (event.shouldCommit()) {
+                        event.rows = history.rows.size();
+                        commit(event, tx, serverTime);
+                    }
+                })
+                .replaceWithVoid();
+    }
+
+    /**
+     * Sets the script fields of the event from the source.
+     */
+    private static void script(ScriptEvent event, ScriptSource source, boolean success) {
+        event.script = source.getScript();
+        event.checksum = source.getChecksum();
+        event.bytes = source.getBytes();
+        event.statements = source.getStatements();
+        event.success = success;
+    }
+
+    /**
+     * Commits the event with the session times. Call it only if the event should be committed.
+     */
+    protected void commit(MigrationEvent event, MigrationSession session, long serverTime) {
+        event.table = table;
+        event.connectionWait = session.connectionWait();
+        event.serverTime = session.serverTime() - serverTime;
+        event.commit();
+    }
+
+    private Uni<HistoryState> lookupHistoryState(MigrationSession session) {
+        return timed(() -> historyState(session), metrics::historyLookup);
+    }
+
+    /**
+     * Records the time of the work from the subscription to the item or the failure.
+     *
+     * @param metric the metric for the time in nanoseconds
+     */
+    private static <T> Uni<T> timed(Supplier<Uni<T>> work, LongConsumer metric) {
+        return Uni.createFrom().deferred(() -> {
+            long start = System.nanoTime();
+            return work.get().eventually(() -> metric.accept(System.nanoTime() - start));
+        });
+    }
+
+    /**
+     * Acquires the lock with the lock strategy on the session.
+     */
+    protected Uni<Void> lock(MigrationSession session) {
+        SessionLock lock = new SessionLock(session);
+        MigrationLockAcquireEvent event = new MigrationLockAcquireEvent();
+        event.begin();
+        long serverTime = session.serverTime();
+        long start = System.nanoTime();
+        return config.getLockStrategy().acquire(lock, config.getLockMaxWait())
+                .onTermination().invoke((item, ex, cancelled) -> {
+                    event.end();
+                    if (ex == null && !cancelled) {
+                        log.info("Migration lock acquired in {} ms, attempts: {}",
+                                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), lock.attempts);
+                    }
+                    if (event.shouldCommit()) {
+                        event.acquired = ex == null && !cancelled;
+                        event.attempts = lock.attempts;
+                        commit(event, session, serverTime);
+                    }
+                });
+    }
+
+    /**
+     * The lock of the session which counts the attempts.
+     */
+    private class SessionLock implements LockStrategy.Lock {
+
+        private final MigrationSession session;
+
+        private int attempts;
+
+        SessionLock(MigrationSession session) {
+            this.session = session;
+        }
+
+        @Override
+        public Uni<Boolean> tryLock() {
+            attempts++;
+            return Database.this.tryLock(session);
+        }
+
+        @Override
+        public Uni<Boolean> lock(Duration timeout) {
+            attempts++;
+            return waitLock(session, timeout);
+        }
+    }
+
+    /**
+     * Gets the descriptions of the repeatable migrations of the plan. The history rows of the repeatable
+     * migrations removed from the plan are ignored.
+     */
+    protected String[] repeatableDescriptions() {
+        return config.getRepeatableMigrations().stream().map(r -> r.description).toArray(String[]::new);
+    }
+
+    /**
+     * Gets the history rows of the repeatable migrations of the plan by description.
+     */
+    protected Uni<Map<String, Migration>> getAllRepeatableMigration(MigrationSession session) {
+        return session.preparedQuery("SELECT id, description, type, script, checksum, execution_time, installed_by FROM " + table
+                + " WHERE version IS NULL AND description = ANY($1)", Tuple.of(repeatableDescriptions())).map(rows -> {
+            Map<String, Migration> result = new HashMap<>(rows.size() * 2);
+            for (Row row : rows) {
+                String description = row.getString(1);
+                Migration m = new Migration();
+                m.exists = true;
+                m.id = row.getLong(0);
+                m.description = description;
+                m.type = row.getString(2);
+                m.script = row.getString(3);
+                m.checksum = row.getLong(4);
+                m.time = row.getLong(5);
+                m.installedBy = row.getString(6);
+                m.success = true;
+                result.put(description, m);
+            }
+            return result;
+        });
+    }
+
+    public Uni<Migration> lastVersionedMigration() {
+        return MigrationSession.open(client, this::lastVersionedMigration);
+    }
+
+    protected Uni<Migration> lastVersionedMigration(MigrationSession session) {
+        return session.query("SELECT * FROM " + table + " WHERE version IS NOT NULL ORDER BY id DESC LIMIT 1").map(rows -> {
+            RowIterator<Row> it = rows.iterator();
+            if (it.hasNext()) {
+                return map(it.next());
+            }
+            return null;
+        });
     }
 
     public static Migration map(Row row) {
@@ -266,27 +923,28 @@ public abstract class Database {
         return m;
     }
 
-    protected List<Migration> createMigrations(List<VersionedMigration> resources, Migration latest, long id) {
-        List<VersionedMigration> versions = resources;
-        if (latest != null) {
-            Version ver = Version.of(latest.version);
-            versions = resources.stream().filter(ver::isLessThan).collect(Collectors.toList());
-        }
-
-        List<Migration> result = new ArrayList<>();
-        for (VersionedMigration m : versions) {
+    protected List<Migration> createMigrations(List<VersionedMigration> pending, long id) {
+        List<Migration> result = new ArrayList<>(pending.size());
+        for (VersionedMigration m : pending) {
             result.add(create(m.resource, id++));
         }
         return result;
     }
 
-    protected List<Migration> createRepeatableMigrations(Migration latest, List<Resource> repeatableMigrations, Map<String, Migration> rms) {
-        long id = latest.id + 1;
+    protected List<Migration> createRepeatableMigrations(long id, List<Resource> repeatableMigrations, Map<String, Migration> rms) {
         List<Migration> result = new ArrayList<>();
         for (Resource rm : repeatableMigrations) {
             Migration m = rms.get(rm.description);
             if (m != null) {
-                if (!m.checksum.equals(rm.checksum)) {
+                if (!rm.checksum.equals(m.checksum)) {
+                    // execute the current script and store its checksum
+                    m.script = rm.script;
+                    m.bundleIndex = rm.bundleIndex;
+                    m.type = config.getChecksumAlgorithm().type();
+                    m.checksum = rm.checksum;
+                    m.transactional = rm.transactional;
+                    m.lockTimeout = rm.lockTimeout;
+                    m.statementTimeout = rm.statementTimeout;
                     result.add(m);
                 }
             } else {
@@ -303,23 +961,56 @@ public abstract class Database {
         r.id = id;
         r.version = resource.version;
         r.description = resource.description;
-        r.type = "SQL";
+        r.type = config.getChecksumAlgorithm().type();
         r.script = resource.script;
+        r.bundleIndex = resource.bundleIndex;
         r.checksum = resource.checksum;
+        r.transactional = resource.transactional;
+        r.lockTimeout = resource.lockTimeout;
+        r.statementTimeout = resource.statementTimeout;
         return r;
     }
 
-    protected void preparedQueryAndAwait(SqlClient tx, String sql, io.vertx.mutiny.sqlclient.Tuple arguments) {
-        log.debug("SQL:\n" + sql);
-        tx.preparedQuery(sql).executeAndAwait(arguments);
+    /**
+     * Runs the action for each item one after another. The next action starts when the previous one completed.
+     */
+    protected static <T> Uni<Void> sequentially(List<T> items, Function<T, Uni<?>> action) {
+        return Multi.createFrom().iterable(items)
+                .onItem().transformToUniAndConcatenate(action)
+                .onItem().ignoreAsUni();
     }
 
-    protected RowSet<Row> queryAndAwait(String sql) {
-        return queryAndAwait(client, sql);
+    /**
+     * Splits the migrations into the groups of the group commit size. The migration outside of the transaction
+     * or with the own timeouts is always a group of its own, the groups before and after it are not merged.
+     */
+    private static List<List<Migration>> partition(List<Migration> migrations, int size) {
+        int step = Math.max(1, size);
+        List<List<Migration>> result = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < migrations.size(); i++) {
+            if (isolated(migrations.get(i))) {
+                if (start < i) {
+                    result.add(migrations.subList(start, i));
+                }
+                result.add(migrations.subList(i, i + 1));
+                start = i + 1;
+            } else if (i + 1 - start == step) {
+                result.add(migrations.subList(start, i + 1));
+                start = i + 1;
+            }
+        }
+        if (start < migrations.size()) {
+            result.add(migrations.subList(start, migrations.size()));
+        }
+        return result;
     }
 
-    private static RowSet<Row> queryAndAwait(SqlClient client, String sql) {
-        log.debug("SQL:\n" + sql);
-        return client.query(sql).executeAndAwait();
+    /**
+     * The timeouts of the script directive are set local to the transaction, they must not leak into
+     * the next scripts of the group.
+     */
+    private static boolean isolated(Migration migration) {
+        return !migration.transactional || migration.lockTimeout != null || migration.statementTimeout != null;
     }
 }
@@ -0,0 +1,22 @@
+package vn.com.acbs.digital.migration.toolkit.database;
+
+/**
+ * Index or constraint of the table dropped before the data load and created again after the load.
+ */
+public class DeferredObject {
+
+    /**
+     * The statement which drops the object.
+     */
+    public final String drop;
+
+    /**
+     * The statement which creates the object again.
+     */
+    public final String create;
+
+    public DeferredObject(String drop, String create) {
+        this.drop = drop;
+        this.create = create;
+    }
+}
@@ -0,0 +1,36 @@
+package vn.com.acbs.digital.migration.toolkit.database;
+
+import io.vertx.mutiny.sqlclient.Tuple;
+import vn.com.acbs.digital.migration.toolkit.models.Migration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * History rows of the executed migrations collected until the end of the transaction.
+ */
+class HistoryBatch {
+
+    final List<Tuple> rows = new ArrayList<>();
+
+    final List<String> scripts = new ArrayList<>();
+
+    void add(Migration migration, long time, String installedBy) {
+        rows.add(Tuple.tuple(Arrays.asList(
+                migration.id, migration.version, migration.description, migration.type,
+                migration.script, migration.checksum, time, true, installedBy
+        )));
+        scripts.add(migration.script);
+    }
+
+    /**
+     * Adds the history row of the migration which is not executed again.
+     */
+    void stamp(Migration migration) {
+        rows.add(Tuple.tuple(Arrays.asList(
+                migration.id, migration.version, migration.description, migration.type,
+                migration.script, migration.checksum, migration.time, true, migration.installedBy
+        )));
+    }
+}
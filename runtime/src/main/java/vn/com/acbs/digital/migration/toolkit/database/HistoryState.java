@@ -0,0 +1,29 @@
+package vn.com.acbs.digital.migration.toolkit.database;
+
+/**
+ * State of the history table loaded with one query.
+ */
+public class HistoryState {
+
+    /**
+     * {@code true} if the history table exists.
+     */
+    public boolean exists;
+
+    /**
+     * The last id of the history table, {@code -1} for the empty table.
+     */
+    public long lastId = -1;
+
+    /**
+     * The version of the last versioned migration.
+     */
+    public String version;
+
+    public String currentUser;
+
+    /**
+     * The digest of the applied repeatable migrations of the plan. See {@link vn.com.acbs.digital.migration.toolkit.models.ResourceLoader#repeatableDigest(java.util.List)}
+     */
+    public String repeatableDigest;
+}
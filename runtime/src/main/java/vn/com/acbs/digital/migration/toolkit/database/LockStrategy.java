@@ -0,0 +1,40 @@
+package vn.com.acbs.digital.migration.toolkit.database;
+
+import io.smallrye.mutiny.Uni;
+
+import java.time.Duration;
+
+/**
+ * Strategy to acquire the migration lock. The lock is acquired and released on the pinned connection
+ * of the migration session.
+ */
+public interface LockStrategy {
+
+    /**
+     * Acquires the lock.
+     *
+     * @param maxWait the maximum time to wait for the lock, {@link Duration#ZERO} to wait without limit
+     */
+    Uni<Void> acquire(Lock lock, Duration maxWait);
+
+    /**
+     * The database lock of the migration session.
+     */
+    interface Lock {
+
+        /**
+         * Tries to get the lock without waiting.
+         *
+         * @return {@code true} if the lock is acquired
+         */
+        Uni<Boolean> tryLock();
+
+        /**
+         * Waits for the lock on the server.
+         *
+         * @param timeout the maximum time to wait, {@link Duration#ZERO} to wait without limit
+         * @return {@code true} if the lock is acquired, {@code false} if the timeout elapsed
+         */
+        Uni<Boolean> lock(Duration timeout);
+    }
+}
@@ -0,0 +1,132 @@
+package vn.com.acbs.digital.migration.toolkit.database;
+
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.sqlclient.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import vn.com.acbs.digital.migration.toolkit.metrics.MigrationMetrics;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * One database session pinned for the whole run. The advisory lock, the scripts, the history writes
+ * and the unlock are executed on the same connection which is released when the run is finished.
+ */
+public class MigrationSession {
+
+    private static final Logger log = LoggerFactory.getLogger(MigrationSession.class);
+
+    private final SqlConnection connection;
+
+    private final MigrationMetrics metrics;
+
+    private final long connectionWait;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicLong serverTime = new AtomicLong();
+
+    private volatile long busySince;
+
+    private MigrationSession(SqlConnection connection, MigrationMetrics metrics, long connectionWait) {
+        this.connection = connection;
+        this.metrics = metrics;
+        this.connectionWait = connectionWait;
+    }
+
+    /**
+     * Opens the session on a pool connection, runs the work and releases the connection
+     * whatever the result of the work is.
+     */
+    public static <T> Uni<T> open(Pool pool, Function<MigrationSession, Uni<T>> work) {
+        return open(pool, MigrationMetrics.NOOP, work);
+    }
+
+    /**
+     * Opens the session which records the time of the transaction commits to the metrics.
+     */
+    public static <T> Uni<T> open(Pool pool, MigrationMetrics metrics, Function<MigrationSession, Uni<T>> work) {
+        return Uni.createFrom().deferred(() -> {
+            long start = System.nanoTime();
+            return pool.getConnection().map(conn -> new MigrationSession(conn, metrics, System.nanoTime() - start));
+        }).chain(session -> Uni.createFrom().deferred(() -> work.apply(session))
+                .eventually(session::close));
+    }
+
+    /**
+     * Runs the work in the transaction on this session. The transaction is committed when the work
+     * succeeded, otherwise it is rolled back.
+     */
+    public <T> Uni<T> transaction(Function<MigrationSession, Uni<T>> work) {
+        return connection.begin().chain(tx -> Uni.createFrom().deferred(() -> work.apply(this))
+                .call(() -> commit(tx))
+                .onFailure().call(() -> tx.rollback().onFailure().recoverWithNull()));
+    }
+
+    private Uni<Void> commit(Transaction tx) {
+        long start = System.nanoTime();
+        return tx.commit().invoke(() -> metrics.commit(System.nanoTime() - start));
+    }
+
+    public SqlConnection connection() {
+        return connection;
+    }
+
+    /**
+     * Gets the time waiting for the pool connection of this session.
+     *
+     * @return the time in nanoseconds
+     */
+    public long connectionWait() {
+        return connectionWait;
+    }
+
+    /**
+     * Gets the time with at least one request of this session on the server. The pipelined requests
+     * are counted once.
+     *
+     * @return the time in nanoseconds
+     */
+    public long serverTime() {
+        long result = serverTime.get();
+        return inFlight.get() > 0 ? result + System.nanoTime() - busySince : result;
+    }
+
+    private void sent() {
+        if (inFlight.getAndIncrement() == 0) {
+            busySince = System.nanoTime();
+        }
+    }
+
+    private void received() {
+        if (inFlight.decrementAndGet() == 0) {
+            serverTime.addAndGet(System.nanoTime() - busySince);
+        }
+    }
+
+    private <T> Uni<T> roundTrip(Uni<T> request) {
+        return request.onSubscription().invoke(this::sent).onTermination().invoke(this::received);
+    }
+
+    public Uni<RowSet<Row>> query(String sql) {
+        log.debug("SQL:\n" + sql);
+        return roundTrip(connection.query(sql).execute());
+    }
+
+    public Uni<RowSet<Row>> preparedQuery(String sql, Tuple arguments) {
+        log.debug("SQL:\n" + sql);
+        return roundTrip(connection.preparedQuery(sql).execute(arguments));
+    }
+
+    public Uni<RowSet<Row>> preparedBatch(String sql, List<Tuple> batch) {
+        log.debug("SQL batch of {}:\n{}", batch.size(), sql);
+        return roundTrip(connection.preparedQuery(sql).executeBatch(batch));
+    }
+
+    private Uni<Void> close() {
+        return connection.close();
+    }
+}
@@ -1,8 +1,20 @@
 package vn.com.acbs.digital.migration.toolkit.database;
 
+import io.smallrye.mutiny.Uni;
+import io.vertx.pgclient.PgException;
 import io.vertx.mutiny.sqlclient.Pool;
 import io.vertx.mutiny.sqlclient.Row;
 import io.vertx.mutiny.sqlclient.RowIterator;
+import io.vertx.mutiny.sqlclient.RowSet;
+import io.vertx.mutiny.sqlclient.Tuple;
+import vn.com.acbs.digital.migration.toolkit.ToolkitConfig;
+import vn.com.acbs.digital.migration.toolkit.jfr.SchemaCleanObjectDropEvent;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 public class PostgresDatabase extends Database {
 
@@ -11,23 +23,67 @@ public class PostgresDatabase extends Database {
     // b + a + r + n + d + b
     private static final long LOCK_NUM = + (0x62L << 48) + (0x61L << 32) + (0x72L << 24) + (0x6E << 16) + (0x64 << 8) + 0x62;
 
+    private static final String UNDEFINED_TABLE = "42P01";
+
+    private static final String LOCK_NOT_AVAILABLE = "55P03";
+
+    private static final String INVALID_INDEXES_SQL = "SELECT format('%I.%I', n.nspname, c.relname) FROM pg_catalog.pg_index i" +
+            " JOIN pg_catalog.pg_class c ON c.oid = i.indexrelid JOIN pg_catalog.pg_namespace n ON n.oid = c.relnamespace" +
+            " WHERE NOT i.indisvalid AND n.nspname = current_schema()";
+
+    private static final String DEFERRED_OBJECTS_SQL = "SELECT format('DROP INDEX %s', i.indexrelid::regclass), pg_catalog.pg_get_indexdef(i.indexrelid)" +
+            " FROM pg_catalog.pg_index i WHERE i.indrelid = $1::regclass" +
+            // the indexes of the constraints and the referenced indexes are kept
+            " AND NOT EXISTS (SELECT 1 FROM pg_catalog.pg_constraint c WHERE c.conindid = i.indexrelid)" +
+            " AND NOT EXISTS (SELECT 1 FROM pg_catalog.pg_depend d WHERE d.refobjid = i.indexrelid AND d.deptype = 'n')" +
+            " UNION ALL SELECT format('ALTER TABLE %s DROP CONSTRAINT %I', c.conrelid::regclass, c.conname)," +
+            " format('ALTER TABLE %s ADD CONSTRAINT %I %s', c.conrelid::regclass, c.conname, pg_catalog.pg_get_constraintdef(c.oid))" +
+            " FROM pg_catalog.pg_constraint c WHERE c.conrelid = $1::regclass AND c.contype IN ('f', 'c')";
+
     private final long lockNum;
 
-    public PostgresDatabase(String table, Pool client) {
-        super(table, client);
-        this.lockNum = LOCK_NUM + table.hashCode();
+    public PostgresDatabase(Pool client, ToolkitConfig config) {
+        super(client, config);
+        // the history table of each schema has the own lock
+        String schema = config.getSchema();
+        String name = config.getHistoryTable();
+        this.lockNum = LOCK_NUM + (schema == null ? name : schema + "." + name).hashCode();
     }
 
     @Override
-    protected String getCurrentUser() {
-        RowIterator<Row> it = queryAndAwait("SELECT CURRENT_USER").iterator();
-        return it.hasNext() ? it.next().getString(0) : "";
+    protected Uni<String> getCurrentUser(MigrationSession session) {
+        return session.query("SELECT CURRENT_USER").map(rows -> {
+            RowIterator<Row> it = rows.iterator();
+            return it.hasNext() ? it.next().getString(0) : "";
+        });
     }
 
-    protected boolean checkMigrationTable() {
-        RowIterator<Row> it = queryAndAwait(checkIfTableExistsQuery( table)).iterator();
-        int tmp = it.hasNext() ? it.next().getInteger(0) : 0;
-        return tmp > 0;
+    @Override
+    protected Uni<HistoryState> historyState(MigrationSession session) {
+        // the digest covers only the repeatable migrations of the plan
+        return session.preparedQuery("SELECT CURRENT_USER AS installed_by," +
+                " (SELECT max(id) FROM " + table + ") AS last_id," +
+                " (SELECT version FROM " + table + " WHERE version IS NOT NULL ORDER BY id DESC LIMIT 1) AS version," +
+                " (SELECT md5(string_agg(description || ':' || checksum, E'\\n' ORDER BY description COLLATE \"C\"))" +
+                " FROM " + table + " WHERE version IS NULL AND description = ANY($1)) AS repeatable_digest",
+                Tuple.of(repeatableDescriptions()))
+                .map(rows -> {
+                    HistoryState state = new HistoryState();
+                    RowIterator<Row> it = rows.iterator();
+                    if (it.hasNext()) {
+                        Row row = it.next();
+                        state.exists = true;
+                        state.currentUser = row.getString("installed_by");
+                        Long id = row.getLong("last_id");
+                        state.lastId = id != null ? id : -1;
+                        state.version = row.getString("version");
+                        state.repeatableDigest = row.getString("repeatable_digest");
+                    }
+                    return state;
+                })
+                // undefined_table
+                .onFailure(ex -> ex instanceof PgException && UNDEFINED_TABLE.equals(((PgException) ex).getCode()))
+                .recoverWithItem(HistoryState::new);
     }
 
     public static String checkIfTableExistsQuery(String table) {
@@ -35,21 +91,144 @@ public class PostgresDatabase extends Database {
     }
 
     @Override
-    protected Boolean tryLock() {
-        RowIterator<Row> it = queryAndAwait("SELECT pg_try_advisory_lock(" + lockNum + ")").iterator();
-        return it.hasNext() ? it.next().getBoolean("pg_try_advisory_lock") : false;
+    protected Uni<Boolean> tryLock(MigrationSession session) {
+        return session.query("SELECT pg_try_advisory_lock(" + lockNum + ")").map(rows -> {
+            RowIterator<Row> it = rows.iterator();
+            return it.hasNext() ? it.next().getBoolean("pg_try_advisory_lock") : false;
+        });
+    }
+
+    /**
+     * Waits for the session advisory lock. The lock timeout is set for the implicit transaction of the query,
+     * the lock is kept after the transaction.
+     */
+    @Override
+    protected Uni<Boolean> waitLock(MigrationSession session, Duration timeout) {
+        return session.query("SET LOCAL lock_timeout = " + Math.min(timeout.toMillis(), Integer.MAX_VALUE) + ";\n" +
+                "SELECT pg_advisory_lock(" + lockNum + ")")
+                .replaceWith(Boolean.TRUE)
+                // lock_not_available
+                .onFailure(ex -> ex instanceof PgException && LOCK_NOT_AVAILABLE.equals(((PgException) ex).getCode()))
+                .recoverWithItem(Boolean.FALSE);
+    }
+
+    @Override
+    protected Uni<Void> setSearchPath(MigrationSession session, String schema) {
+        // the public schema keeps the extension functions and types visible to the tenant scripts
+        return session.query("SET search_path TO " + quoteIdentifier(schema) + ", public").replaceWithVoid();
+    }
+
+    @Override
+    protected Uni<Void> resetSearchPath(MigrationSession session) {
+        return session.query("RESET search_path").replaceWithVoid();
+    }
+
+    @Override
+    protected Uni<List<String>> invalidIndexes(MigrationSession session) {
+        return session.query(INVALID_INDEXES_SQL).map(rows -> {
+            List<String> result = new ArrayList<>();
+            for (Row row : rows) {
+                result.add(row.getString(0));
+            }
+            return result;
+        });
+    }
+
+    @Override
+    protected Uni<Void> dropIndex(MigrationSession session, String index) {
+        return session.query("DROP INDEX CONCURRENTLY IF EXISTS " + index).replaceWithVoid();
+    }
+
+    @Override
+    protected Uni<Void> setTimeouts(MigrationSession session, Long lockTimeout, Long statementTimeout, boolean local) {
+        String set = local ? "SET LOCAL " : "SET ";
+        List<String> sql = new ArrayList<>(2);
+        if (lockTimeout != null) {
+            sql.add(set + "lock_timeout = " + lockTimeout);
+        }
+        if (statementTimeout != null) {
+            sql.add(set + "statement_timeout = " + statementTimeout);
+        }
+        return session.query(String.join(";\n", sql)).replaceWithVoid();
+    }
+
+    @Override
+    protected Uni<Void> resetTimeouts(MigrationSession session) {
+        return session.query("RESET lock_timeout;\nRESET statement_timeout").replaceWithVoid();
+    }
+
+    @Override
+    protected boolean isLockTimeout(Throwable ex) {
+        // the script errors are wrapped with the statement of the script
+        for (Throwable e = ex; e != null; e = e.getCause()) {
+            if (e instanceof PgException && LOCK_NOT_AVAILABLE.equals(((PgException) e).getCode())) {
+                return true;
+            }
+        }
+        return false;
     }
 
     @Override
-    protected void unlock() {
-        queryAndAwait("SELECT pg_advisory_unlock(" + lockNum + ")");
+    protected Uni<Void> setBootstrapSettings(MigrationSession session) {
+        return session.query("SET synchronous_commit = off").replaceWithVoid();
+    }
+
+    @Override
+    protected Uni<Void> resetBootstrapSettings(MigrationSession session) {
+        return session.query("RESET synchronous_commit").replaceWithVoid();
+    }
+
+    @Override
+    protected Uni<List<DeferredObject>> deferredObjects(MigrationSession session, String table) {
+        return session.preparedQuery(DEFERRED_OBJECTS_SQL, Tuple.of(table)).map(rows -> {
+            List<DeferredObject> result = new ArrayList<>();
+            for (Row row : rows) {
+                result.add(new DeferredObject(row.getString(0), row.getString(1)));
+            }
+            return result;
+        });
+    }
+
+    @Override
+    protected Uni<Void> unlock(MigrationSession session) {
+        return session.query("SELECT pg_advisory_unlock(" + lockNum + ")").replaceWithVoid();
     }
 
     @Override
     protected String getInsertMigrationSQL() {
         return "INSERT INTO " + table +
                 " (id,version,description,type,script,checksum,execution_time,success,installed_by)" +
-                " VALUES ($1,$2,$3,$4,$5,$6,$7,$8,$9)";
+                " VALUES ($1,$2,$3,$4,$5,$6,$7,$8,$9)" +
+                " ON CONFLICT (id) DO UPDATE SET type = EXCLUDED.type, checksum = EXCLUDED.checksum," +
+                " execution_time = EXCLUDED.execution_time, installed_by = EXCLUDED.installed_by";
+    }
+
+    @Override
+    protected Uni<String> dataInsertSql(MigrationSession session, String table, List<String> columns) {
+        return session.preparedQuery("SELECT a.attname, format_type(a.atttypid, a.atttypmod) FROM pg_catalog.pg_attribute a" +
+                " WHERE a.attrelid = $1::text::regclass AND a.attnum > 0 AND NOT a.attisdropped", Tuple.of(table))
+                .map(rows -> {
+                    Map<String, String> types = new HashMap<>();
+                    for (Row row : rows) {
+                        types.put(row.getString(0), row.getString(1));
+                    }
+                    StringBuilder names = new StringBuilder();
+                    StringBuilder values = new StringBuilder();
+                    for (int i = 0; i < columns.size(); i++) {
+                        String column = columns.get(i);
+                        String type = types.get(column);
+                        if (type == null) {
+                            throw new IllegalStateException("Column " + column + " does not exist in the table " + table);
+                        }
+                        if (i > 0) {
+                            names.append(',');
+                            values.append(',');
+                        }
+                        names.append('"').append(column.replace("\"", "\"\"")).append('"');
+                        values.append('$').append(i + 1).append("::text::").append(type);
+                    }
+                    return "INSERT INTO " + table + " (" + names + ") VALUES (" + values + ")";
+                });
     }
 
     @Override
@@ -66,97 +245,130 @@ public class PostgresDatabase extends Database {
                 "    \"execution_time\" BIGINT NOT NULL,\n" +
                 "    \"success\" BOOLEAN NOT NULL\n" +
                 ");\n" +
-                "ALTER TABLE " + table + " ADD CONSTRAINT \"" + table + "_pk\" PRIMARY KEY (\"id\");\n" +
-                "CREATE INDEX \"" + table + "_s_idx\" ON " + table + " (\"success\");";
+                "ALTER TABLE " + table + " ADD CONSTRAINT \"" + config.getHistoryTable() + "_pk\" PRIMARY KEY (\"id\");\n" +
+                "CREATE INDEX \"" + config.getHistoryTable() + "_s_idx\" ON " + table + " (\"success\");";
     }
 
-    private String sc(String value) {
-        return value;
+    /**
+     * Cleans the current schema in one round trip. The drop list is built from one catalog snapshot
+     * and executed by the temporary server-side function in the dependency order, the function runs
+     * in one transaction and returns the drop statements with their server time for the drop event.
+     */
+    @Override
+    public Uni<Void> cleanSchema(MigrationSession session) {
+        return session.query(cleanSchemaSql(config.isCleanDropSchema())).invoke(rows -> {
+            for (RowSet<Row> result = rows; result != null; result = result.next()) {
+                for (Row row : result) {
+                    if (row.size() == 2) {
+                        SchemaCleanObjectDropEvent event = new SchemaCleanObjectDropEvent();
+                        if (event.shouldCommit()) {
+                            event.statement = row.getString(0);
+                            event.table = table;
+                            event.connectionWait = session.connectionWait();
+                            event.serverTime = row.getLong(1);
+                            event.commit();
+                        }
+                    }
+                }
+            }
+        }).replaceWithVoid();
     }
 
-    public void cleanSchema() {
-
-        // drop all materialized views
-        for (Row row : queryAndAwait("SELECT relname FROM pg_catalog.pg_class c " +
-                " JOIN pg_namespace n ON n.oid = c.relnamespace " +
-                " WHERE c.relkind = 'm' AND n.nspname = current_schema()")) {
-            queryAndAwait("DROP MATERIALIZED VIEW IF EXISTS " + sc(row.getString(0)) + " CASCADE");
-        }
-
-        // drop all statement views
-        for (Row row : queryAndAwait("SELECT relname FROM pg_catalog.pg_class c " +
-                " JOIN pg_namespace n ON n.oid = c.relnamespace" +
-                " LEFT JOIN pg_depend dep ON dep.objid = c.oid AND dep.deptype = 'e' " +
-                " WHERE c.relkind = 'v' AND  n.nspname = current_schema() AND  dep.objid IS NULL")) {
-            queryAndAwait("DROP VIEW IF EXISTS " + sc(row.getString(0)) + " CASCADE");
-        }
-
-        // drop all tables
-        for (Row row : queryAndAwait("SELECT t.table_name FROM information_schema.tables t" +
-                " LEFT JOIN pg_depend dep ON dep.objid = (quote_ident(t.table_schema)||'.'||quote_ident(t.table_name))::regclass::oid AND dep.deptype = 'e'" +
-                " WHERE t.table_schema=current_schema() AND table_type='BASE TABLE' AND dep.objid IS NULL" +
-                " AND NOT (SELECT EXISTS (SELECT inhrelid FROM pg_catalog.pg_inherits" +
-                " WHERE inhrelid = (quote_ident(t.table_schema)||'.'||quote_ident(t.table_name))::regclass::oid))")) {
-            queryAndAwait("DROP TABLE " + sc(row.getString(0)) + " CASCADE");
-        }
-
-        // drop all statements for base types and created user types
-        for (Row row : queryAndAwait("SELECT typname, typcategory FROM pg_catalog.pg_type t LEFT JOIN pg_depend dep ON dep.objid = t.oid AND dep.deptype = 'e'" +
-                " WHERE (t.typrelid = 0 OR (SELECT c.relkind = 'c' FROM pg_catalog.pg_class c WHERE c.oid = t.typrelid))" +
-                " AND NOT EXISTS(SELECT 1 FROM pg_catalog.pg_type el WHERE el.oid = t.typelem AND el.typarray = t.oid)" +
-                " AND t.typnamespace IN (SELECT oid FROM pg_catalog.pg_namespace WHERE nspname = current_schema())" +
-                " AND dep.objid IS NULL AND t.typtype != 'd'")) {
-
-            String typename = row.getString(0);
-            queryAndAwait("DROP TYPE IF EXISTS  " + sc(typename) + " CASCADE");
-            String t = row.getString(1);
-
-            // Only recreate Pseudo-types (P) and User-defined types (U)
-            if ("P".equals(t) || "U".equals(t)) {
-                queryAndAwait("CREATE TYPE " + sc(typename) + " CASCADE");
-            }
-        }
+    /**
+     * Creates the clean function for the current schema and the query of the function. The function
+     * returns the executed drop statements with their server time in nanoseconds.
+     *
+     * @param dropSchema {@code true} to drop and recreate the schema if the current user owns it
+     * @return the clean function and query
+     */
+    static String cleanSchemaSql(boolean dropSchema) {
+        return "CREATE OR REPLACE FUNCTION pg_temp.toolkit_clean()" +
+                " RETURNS TABLE (drop_statement text, drop_time bigint) LANGUAGE plpgsql AS $clean$\n" +
+                cleanSchemaBlock(dropSchema) + "$clean$;\n" +
+                "SELECT drop_statement, drop_time FROM pg_temp.toolkit_clean();\n" +
+                "DROP FUNCTION pg_temp.toolkit_clean()";
+    }
 
-        // dropping all routines in this schema
-        for (Row row : queryAndAwait("SELECT proname, oidvectortypes(proargtypes) AS args," +
-                " CASE WHEN pg_proc.prokind='p' THEN 'PROCEDURE'" +
-                "   WHEN pg_proc.prokind='a' THEN 'AGGREGATE'" +
-                "   ELSE 'FUNCTION'" +
-                " END as type" +
-                " FROM pg_proc INNER JOIN pg_namespace ns ON (pg_proc.pronamespace = ns.oid)\n" +
-                " LEFT JOIN pg_depend dep ON dep.objid = pg_proc.oid AND dep.deptype = 'e'\n" +
-                " WHERE ns.nspname = current_schema() AND dep.objid IS NULL")) {
-            queryAndAwait("DROP " + row.getString(2) + " IF EXISTS " + sc(row.getString(0))
-                    + "(" + row.getString(1) + ")  CASCADE"
-            );
+    private static String cleanSchemaBlock(boolean dropSchema) {
+        StringBuilder sql = new StringBuilder()
+                .append("DECLARE\n")
+                .append("  s text := current_schema();\n")
+                .append("  r record;\n")
+                .append("  t timestamptz;\n")
+                .append("BEGIN\n")
+                .append("  IF s IS NULL THEN\n")
+                .append("    RETURN;\n")
+                .append("  END IF;\n");
+        if (dropSchema) {
+            sql.append("  IF EXISTS (SELECT 1 FROM pg_catalog.pg_namespace n WHERE n.nspname = s")
+                    .append(" AND n.nspowner = (SELECT oid FROM pg_catalog.pg_roles WHERE rolname = current_user)) THEN\n")
+                    .append(cleanStatement("format('DROP SCHEMA %I CASCADE', s)"))
+                    .append("    EXECUTE format('CREATE SCHEMA %I', s);\n")
+                    .append("    RETURN;\n")
+                    .append("  END IF;\n");
         }
+        return sql.append("  FOR r IN ").append(DROP_STATEMENTS).append(" LOOP\n")
+                .append(cleanStatement("r.stmt"))
+                .append("  END LOOP;\n")
+                .append("END\n")
+                .toString();
+    }
 
-        // dropping the enums in this schema
-        for (Row row : queryAndAwait("SELECT t.typname FROM pg_catalog.pg_type t INNER JOIN pg_catalog.pg_namespace n ON n.oid = t.typnamespace" +
-                " WHERE n.nspname = current_schema() AND t.typtype = 'e'")) {
-            queryAndAwait("DROP TYPE  " + sc(row.getString(0)));
-        }
+    private static String cleanStatement(String statement) {
+        return "    t := clock_timestamp();\n" +
+                "    EXECUTE " + statement + ";\n" +
+                "    drop_statement := " + statement + ";\n" +
+                "    drop_time := (extract(epoch FROM clock_timestamp() - t) * 1000000000)::bigint;\n" +
+                "    RETURN NEXT;\n";
+    }
 
-        // dropping the domains in this schema
-        for (Row row : queryAndAwait("SELECT t.typname as domain_name FROM pg_catalog.pg_type t " +
-                " LEFT JOIN pg_catalog.pg_namespace n ON n.oid = t.typnamespace" +
-                " LEFT JOIN pg_depend dep ON dep.objid = t.oid AND dep.deptype = 'e'" +
-                " WHERE t.typtype = 'd'  AND n.nspname = current_schema()  AND dep.objid IS NULL")) {
-            queryAndAwait("DROP DOMAIN  " + sc(row.getString(0)));
-        }
+    private static final String NOT_EXTENSION = " AND NOT EXISTS (SELECT 1 FROM pg_catalog.pg_depend dep WHERE dep.objid = %s AND dep.deptype = 'e')";
 
-        // dropping the sequences in this schema
-        for (Row row : queryAndAwait("SELECT sequence_name FROM information_schema.sequences WHERE sequence_schema=current_schema()")) {
-            queryAndAwait("DROP TYPE " + sc(row.getString(0)) + " CASCADE");
-        }
+    private static final String BASE_TYPES = " FROM pg_catalog.pg_type t JOIN pg_catalog.pg_namespace n ON n.oid = t.typnamespace" +
+            " WHERE n.nspname = s AND t.typtype NOT IN ('d', 'e')" +
+            " AND (t.typrelid = 0 OR (SELECT c.relkind = 'c' FROM pg_catalog.pg_class c WHERE c.oid = t.typrelid))" +
+            " AND NOT EXISTS (SELECT 1 FROM pg_catalog.pg_type el WHERE el.oid = t.typelem AND el.typarray = t.oid)" +
+            String.format(NOT_EXTENSION, "t.oid");
 
-        // drop all statements for base types
-        for (Row row : queryAndAwait("SELECT typname, typcategory FROM pg_catalog.pg_type t LEFT JOIN pg_depend dep ON dep.objid = t.oid AND dep.deptype = 'e'" +
-                " WHERE (t.typrelid = 0 OR (SELECT c.relkind = 'c' FROM pg_catalog.pg_class c WHERE c.oid = t.typrelid))" +
-                " AND NOT EXISTS(SELECT 1 FROM pg_catalog.pg_type el WHERE el.oid = t.typelem AND el.typarray = t.oid)" +
-                " AND t.typnamespace IN (SELECT oid FROM pg_catalog.pg_namespace WHERE nspname = current_schema())" +
-                " AND dep.objid IS NULL AND t.typtype != 'd'")) {
-            queryAndAwait("DROP TYPE IF EXISTS " + sc(row.getString(0)) + " CASCADE");
-        }
-    }
+    // ordered drop statements: ord, name, sub
+    private static final String DROP_STATEMENTS = "SELECT d.stmt FROM (" +
+            // materialized views
+            " SELECT 1 AS ord, c.relname AS name, 0 AS sub, format('DROP MATERIALIZED VIEW IF EXISTS %I.%I CASCADE', n.nspname, c.relname) AS stmt" +
+            " FROM pg_catalog.pg_class c JOIN pg_catalog.pg_namespace n ON n.oid = c.relnamespace" +
+            " WHERE c.relkind = 'm' AND n.nspname = s" +
+            // views
+            " UNION ALL SELECT 2, c.relname, 0, format('DROP VIEW IF EXISTS %I.%I CASCADE', n.nspname, c.relname)" +
+            " FROM pg_catalog.pg_class c JOIN pg_catalog.pg_namespace n ON n.oid = c.relnamespace" +
+            " WHERE c.relkind = 'v' AND n.nspname = s" + String.format(NOT_EXTENSION, "c.oid") +
+            // tables, the inherited tables and partitions are dropped with the parent
+            " UNION ALL SELECT 3, c.relname, 0, format('DROP TABLE IF EXISTS %I.%I CASCADE', n.nspname, c.relname)" +
+            " FROM pg_catalog.pg_class c JOIN pg_catalog.pg_namespace n ON n.oid = c.relnamespace" +
+            " WHERE c.relkind IN ('r', 'p') AND n.nspname = s" + String.format(NOT_EXTENSION, "c.oid") +
+            " AND NOT EXISTS (SELECT 1 FROM pg_catalog.pg_inherits i WHERE i.inhrelid = c.oid)" +
+            // base and composite types, the user-defined base types are recreated as shell types
+            // to release the input and output routines
+            " UNION ALL SELECT 4, t.typname, 0, format('DROP TYPE IF EXISTS %I.%I CASCADE', n.nspname, t.typname)" + BASE_TYPES +
+            " UNION ALL SELECT 4, t.typname, 1, format('CREATE TYPE %I.%I', n.nspname, t.typname)" + BASE_TYPES +
+            " AND t.typcategory IN ('P', 'U')" +
+            // routines
+            " UNION ALL SELECT 5, p.proname, 0, format('DROP %s IF EXISTS %I.%I(%s) CASCADE'," +
+            " CASE p.prokind WHEN 'p' THEN 'PROCEDURE' WHEN 'a' THEN 'AGGREGATE' ELSE 'FUNCTION' END," +
+            " n.nspname, p.proname, pg_catalog.pg_get_function_identity_arguments(p.oid))" +
+            " FROM pg_catalog.pg_proc p JOIN pg_catalog.pg_namespace n ON n.oid = p.pronamespace" +
+            " WHERE n.nspname = s" + String.format(NOT_EXTENSION, "p.oid") +
+            // enums
+            " UNION ALL SELECT 6, t.typname, 0, format('DROP TYPE IF EXISTS %I.%I CASCADE', n.nspname, t.typname)" +
+            " FROM pg_catalog.pg_type t JOIN pg_catalog.pg_namespace n ON n.oid = t.typnamespace" +
+            " WHERE t.typtype = 'e' AND n.nspname = s" + String.format(NOT_EXTENSION, "t.oid") +
+            // domains
+            " UNION ALL SELECT 7, t.typname, 0, format('DROP DOMAIN IF EXISTS %I.%I CASCADE', n.nspname, t.typname)" +
+            " FROM pg_catalog.pg_type t JOIN pg_catalog.pg_namespace n ON n.oid = t.typnamespace" +
+            " WHERE t.typtype = 'd' AND n.nspname = s" + String.format(NOT_EXTENSION, "t.oid") +
+            // sequences
+            " UNION ALL SELECT 8, c.relname, 0, format('DROP SEQUENCE IF EXISTS %I.%I CASCADE', n.nspname, c.relname)" +
+            " FROM pg_catalog.pg_class c JOIN pg_catalog.pg_namespace n ON n.oid = c.relnamespace" +
+            " WHERE c.relkind = 'S' AND n.nspname = s" + String.format(NOT_EXTENSION, "c.oid") +
+            // remaining shell types
+            " UNION ALL SELECT 9, t.typname, 0, format('DROP TYPE IF EXISTS %I.%I CASCADE', n.nspname, t.typname)" + BASE_TYPES +
+            ") d ORDER BY d.ord, d.name, d.sub";
 }
@@ -0,0 +1,42 @@
+package vn.com.acbs.digital.migration.toolkit.database;
+
+import vn.com.acbs.digital.migration.toolkit.models.SqlStatement;
+
+/**
+ * The statement of the script failed.
+ */
+public class ScriptExecutionException extends IllegalStateException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String script;
+
+    private final int index;
+
+    private final int line;
+
+    public ScriptExecutionException(String script, SqlStatement statement, Throwable cause) {
+        super("Error execute statement " + statement.index + " at line " + statement.line + " of the script "
+                + script + ": " + cause.getMessage(), cause);
+        this.script = script;
+        this.index = statement.index;
+        this.line = statement.line;
+    }
+
+    public String getScript() {
+        return script;
+    }
+
+    /**
+     * Gets the position of the failed statement in the script starting with 1.
+     *
+     * @return the position of the failed statement
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    public int getLine() {
+        return line;
+    }
+}
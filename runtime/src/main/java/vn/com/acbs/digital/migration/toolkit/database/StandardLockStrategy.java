@@ -0,0 +1,68 @@
+package vn.com.acbs.digital.migration.toolkit.database;
+
+import io.smallrye.mutiny.Uni;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The lock strategies of the toolkit.
+ */
+public enum StandardLockStrategy implements LockStrategy {
+
+    /**
+     * Waits for the lock on the server. The waiting instance gets the lock as soon as it is released.
+     */
+    BLOCKING {
+        @Override
+        public Uni<Void> acquire(Lock lock, Duration maxWait) {
+            return lock.lock(maxWait).chain(locked -> locked
+                    ? Uni.createFrom().voidItem()
+                    : Uni.createFrom().failure(timeout(maxWait)));
+        }
+    },
+
+    /**
+     * Tries to get the lock, the delay between the attempts grows exponentially with the random jitter.
+     */
+    BACKOFF {
+        @Override
+        public Uni<Void> acquire(Lock lock, Duration maxWait) {
+            return backoff(lock, maxWait, System.nanoTime(), BACKOFF_INITIAL_DELAY.toNanos());
+        }
+    };
+
+    static final Duration BACKOFF_INITIAL_DELAY = Duration.ofMillis(50L);
+
+    static final Duration BACKOFF_MAX_DELAY = Duration.ofSeconds(5L);
+
+    private static Uni<Void> backoff(Lock lock, Duration maxWait, long start, long delay) {
+        return lock.tryLock().chain(locked -> {
+            if (locked) {
+                return Uni.createFrom().voidItem();
+            }
+            long next = jitter(delay);
+            if (!maxWait.isZero()) {
+                long remaining = maxWait.toNanos() - (System.nanoTime() - start);
+                if (remaining <= 0) {
+                    return Uni.createFrom().failure(timeout(maxWait));
+                }
+                next = Math.min(next, remaining);
+            }
+            return Uni.createFrom().voidItem()
+                    .onItem().delayIt().by(Duration.ofNanos(next))
+                    .chain(() -> backoff(lock, maxWait, start, Math.min(delay * 2, BACKOFF_MAX_DELAY.toNanos())));
+        });
+    }
+
+    /**
+     * Gets the random delay between the half and the whole delay.
+     */
+    static long jitter(long delay) {
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    private static IllegalStateException timeout(Duration maxWait) {
+        return new IllegalStateException("Unable to acquire the migration lock in " + maxWait.toMillis() + " ms");
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2020 lorislab.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vn.com.acbs.digital.migration.toolkit.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Base of the flight recorder events of the migration toolkit. The events are committed only if the recording
+ * of the event is enabled, the fields are set after {@link #shouldCommit()} returned {@code true}.
+ */
+@Category("Migration Toolkit")
+@StackTrace(false)
+public abstract class MigrationEvent extends Event {
+
+    @Label("History Table")
+    public String table;
+
+    @Label("Connection Wait")
+    @Description("Time waiting for the pool connection of the session")
+    @Timespan(Timespan.NANOSECONDS)
+    public long connectionWait;
+
+    @Label("Server Time")
+    @Description("Time with at least one request of the session on the server")
+    @Timespan(Timespan.NANOSECONDS)
+    public long serverTime;
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2020 lorislab.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vn.com.acbs.digital.migration.toolkit.jfr;
+
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Drop of one schema object. The objects are dropped by one server-side block, the server time
+ * is the time of the drop statement measured by the server.
+ */
+@Name("vn.com.acbs.migration.toolkit.SchemaCleanObjectDrop")
+@Label("Schema Clean Object Drop")
+public class SchemaCleanObjectDropEvent extends MigrationEvent {
+
+    @Label("Statement")
+    public String statement;
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2020 lorislab.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vn.com.acbs.digital.migration.toolkit.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Micrometer metrics of the migration runs. Every meter is tagged with the history table,
+ * the meters of the tenant migrations also with the schema and the script meters with the
+ * script type. The schema version is an info gauge with the value 1 and the version tag.
+ */
+public class MicrometerMigrationMetrics implements MigrationMetrics {
+
+    public static final String PREFIX = "migration.toolkit.";
+
+    private static final String TABLE = "table";
+
+    private static final String SCHEMA = "schema";
+
+    private static final String TYPE = "type";
+
+    private static final String VERSION = "version";
+
+    private final MeterRegistry registry;
+
+    private final Tags tags;
+
+    private final Map<String, AtomicLong> pending = new ConcurrentHashMap<>();
+
+    public MicrometerMigrationMetrics(MeterRegistry registry, String table) {
+        this(registry, Tags.of(TABLE, table));
+    }
+
+    private MicrometerMigrationMetrics(MeterRegistry registry, Tags tags) {
+        this.registry = registry;
+        this.tags = tags;
+    }
+
+    /**
+     * Creates the metrics in the global registry. Only call it if Micrometer is on the class path.
+     *
+     * @param table the history table
+     * @return the metrics
+     */
+    public static MigrationMetrics create(String table) {
+        return new MicrometerMigrationMetrics(Metrics.globalRegistry, table);
+    }
+
+    private Timer timer(String name, String description, Tags tags) {
+        return Timer.builder(PREFIX + name).description(description).tags(tags).register(registry);
+    }
+
+    private Counter counter(String name, String description, String type) {
+        return Counter.builder(PREFIX + name).description(description).tags(tags).tag(TYPE, type).register(registry);
+    }
+
+    /**
+     * Removes the gauges of the previous application start, for example after the dev mode restart.
+     */
+    private void remove(Collection<Gauge> gauges, String version) {
+        gauges.stream()
+                .filter(g -> version == null || !version.equals(g.getId().getTag(VERSION)))
+                .forEach(registry::remove);
+    }
+
+    private AtomicLong pending(String type) {
+        return pending.computeIfAbsent(type, t -> {
+            AtomicLong value = new AtomicLong();
+            remove(registry.find(PREFIX + "scripts.pending").tags(tags).tag(TYPE, t).gauges(), null);
+            Gauge.builder(PREFIX + "scripts.pending", value, AtomicLong::get)
+                    .description("Number of scripts to run")
+                    .strongReference(true)
+                    .tags(tags).tag(TYPE, t)
+                    .register(registry);
+            return value;
+        });
+    }
+
+    /**
+     * Creates the metrics of the tenant schema. The meters are registered on the first record, so the
+     * tenant migrations do not register the meters without the schema tag.
+     */
+    @Override
+    public MigrationMetrics forSchema(String schema) {
+        return new MicrometerMigrationMetrics(registry, tags.and(SCHEMA, schema));
+    }
+
+    @Override
+    public void lockWait(long nanos) {
+        timer("lock.wait", "Time waiting for the migration lock", tags).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void historyLookup(long nanos) {
+        timer("history.lookup", "Time of the history table queries", tags).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void scriptExecuted(String type, long nanos) {
+        timer("script.execution", "Execution time of the migration scripts", tags.and(TYPE, type))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void commit(long nanos) {
+        timer("commit", "Time of the migration transaction commits", tags).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void clean(long nanos) {
+        timer("clean", "Time of the schema clean", tags).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void scriptsApplied(String type, long count) {
+        counter("scripts.applied", "Number of applied scripts", type).increment(count);
+        pending(type).updateAndGet(x -> Math.max(0, x - count));
+    }
+
+    @Override
+    public void scriptsSkipped(String type, long count) {
+        counter("scripts.skipped", "Number of already applied, unchanged or empty scripts", type).increment(count);
+    }
+
+    @Override
+    public void scriptFailed(String type) {
+        counter("scripts.failed", "Number of failed scripts", type).increment();
+    }
+
+    @Override
+    public void pending(String type, long count) {
+        pending(type).set(count);
+    }
+
+    @Override
+    public synchronized void version(String value) {
+        String tag = value == null ? "" : value;
+        remove(registry.find(PREFIX + "schema.version").tags(tags).gauges(), tag);
+        Gauge.builder(PREFIX + "schema.version", () -> 1)
+                .description("Current version of the schema")
+                .tags(tags).tag(VERSION, tag)
+                .register(registry);
+    }
+}
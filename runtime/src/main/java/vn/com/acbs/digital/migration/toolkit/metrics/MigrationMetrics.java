@@ -0,0 +1,108 @@
+/*
+ * Copyright 2020 lorislab.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vn.com.acbs.digital.migration.toolkit.metrics;
+
+import vn.com.acbs.digital.migration.toolkit.models.Migration;
+
+/**
+ * Metrics of the migration runs. All durations are in nanoseconds measured with {@link System#nanoTime()}.
+ * The default methods do nothing, so the engine does not depend on the metrics library.
+ */
+public interface MigrationMetrics {
+
+    /**
+     * The metrics which record nothing.
+     */
+    MigrationMetrics NOOP = new MigrationMetrics() {
+    };
+
+    String VERSIONED = "versioned";
+
+    String REPEATABLE = "repeatable";
+
+    /**
+     * Gets the script type tag of the migration.
+     *
+     * @param migration the migration
+     * @return {@link #VERSIONED} or {@link #REPEATABLE}
+     */
+    static String type(Migration migration) {
+        return migration.version == null ? REPEATABLE : VERSIONED;
+    }
+
+    /**
+     * Gets the metrics of the tenant schema migration.
+     *
+     * @param schema the schema
+     * @return the metrics tagged with the schema
+     */
+    default MigrationMetrics forSchema(String schema) {
+        return this;
+    }
+
+    default void lockWait(long nanos) {
+    }
+
+    default void historyLookup(long nanos) {
+    }
+
+    default void scriptExecuted(String type, long nanos) {
+    }
+
+    default void commit(long nanos) {
+    }
+
+    default void clean(long nanos) {
+    }
+
+    /**
+     * Records the committed scripts, the applied scripts are no longer pending.
+     *
+     * @param type  the script type
+     * @param count the number of scripts
+     */
+    default void scriptsApplied(String type, long count) {
+    }
+
+    /**
+     * Records the scripts which were not executed because they are already applied, unchanged or empty.
+     *
+     * @param type  the script type
+     * @param count the number of scripts
+     */
+    default void scriptsSkipped(String type, long count) {
+    }
+
+    default void scriptFailed(String type) {
+    }
+
+    /**
+     * Sets the number of scripts to run.
+     *
+     * @param type  the script type
+     * @param count the number of scripts
+     */
+    default void pending(String type, long count) {
+    }
+
+    /**
+     * Sets the current version of the schema.
+     *
+     * @param version the version or {@code null} if there is no versioned migration applied
+     */
+    default void version(String version) {
+    }
+}
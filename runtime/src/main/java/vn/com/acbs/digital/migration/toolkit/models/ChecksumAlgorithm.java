@@ -0,0 +1,109 @@
+/*
+ * Copyright 2020 lorislab.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vn.com.acbs.digital.migration.toolkit.models;
+
+import java.nio.ByteBuffer;
+import java.util.function.Supplier;
+import java.util.zip.Checksum;
+
+/**
+ * The checksum algorithm of the migration scripts. The algorithm is recorded in the type column
+ * of the history table, the rows of the {@link #CRC32} algorithm keep the original {@code SQL} type.
+ */
+public enum ChecksumAlgorithm {
+
+    /**
+     * The CRC32 checksum, the default algorithm.
+     */
+    CRC32("SQL", java.util.zip.CRC32::new),
+
+    /**
+     * The CRC32C checksum computed by the hardware instructions where the platform supports it.
+     */
+    CRC32C("SQL:CRC32C", java.util.zip.CRC32C::new);
+
+    private static final String SQL = "SQL";
+
+    private static final String BASELINE = "SQL_BASELINE";
+
+    private final String type;
+
+    private final Supplier<Checksum> factory;
+
+    ChecksumAlgorithm(String type, Supplier<Checksum> factory) {
+        this.type = type;
+        this.factory = factory;
+    }
+
+    /**
+     * Gets the history type of the migrations with this algorithm.
+     *
+     * @return the history type
+     */
+    public String type() {
+        return type;
+    }
+
+    /**
+     * Gets the history type of the baseline scripts with this algorithm.
+     *
+     * @return the baseline history type
+     */
+    public String baselineType() {
+        return BASELINE + type.substring(SQL.length());
+    }
+
+    public Checksum create() {
+        return factory.get();
+    }
+
+    public long checksum(byte[] value) {
+        if (value == null || value.length <= 0) {
+            return 0;
+        }
+        return checksum(ByteBuffer.wrap(value));
+    }
+
+    /**
+     * Computes the checksum of the remaining content of the buffer. The position of the buffer is not changed.
+     *
+     * @param value the content
+     * @return the checksum or {@code 0} for the empty content
+     */
+    public long checksum(ByteBuffer value) {
+        if (value == null || !value.hasRemaining()) {
+            return 0;
+        }
+        Checksum checksum = create();
+        checksum.update(value.duplicate());
+        return checksum.getValue();
+    }
+
+    /**
+     * Gets the algorithm of the history type.
+     *
+     * @param type the history type
+     * @return the algorithm, {@link #CRC32} for the unknown type
+     */
+    public static ChecksumAlgorithm ofType(String type) {
+        for (ChecksumAlgorithm algorithm : values()) {
+            if (algorithm.type.equals(type) || algorithm.baselineType().equals(type)) {
+                return algorithm;
+            }
+        }
+        return CRC32;
+    }
+}
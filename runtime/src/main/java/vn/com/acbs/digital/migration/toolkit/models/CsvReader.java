@@ -0,0 +1,163 @@
+/*
+ * Copyright 2020 lorislab.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vn.com.acbs.digital.migration.toolkit.models;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the delimited records one at a time. Fields may be quoted with {@code "}, a doubled quote inside
+ * of the quoted field is one quote. The empty unquoted field is {@code null}, the empty quoted field is
+ * the empty string. Empty lines are skipped.
+ */
+public class CsvReader implements Iterator<String[]> {
+
+    public static final String CSV_SUFFIX = ".csv";
+
+    public static final String TSV_SUFFIX = ".tsv";
+
+    private final BufferedReader reader;
+
+    private final char delimiter;
+
+    private String[] next;
+
+    private boolean eof;
+
+    public CsvReader(Reader reader, char delimiter) {
+        this.reader = new BufferedReader(reader);
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * Checks if the test data resource is the delimited data file.
+     *
+     * @param resource the resource path
+     * @return {@code true} for {@code .csv} and {@code .tsv} resources
+     */
+    public static boolean isDataFile(String resource) {
+        return resource.endsWith(CSV_SUFFIX) || resource.endsWith(TSV_SUFFIX);
+    }
+
+    /**
+     * Gets the delimiter for the data file.
+     *
+     * @param resource the resource path
+     * @return tab for {@code .tsv} resources, comma otherwise
+     */
+    public static char delimiter(String resource) {
+        return resource.endsWith(TSV_SUFFIX) ? '\t' : ',';
+    }
+
+    /**
+     * Gets the target table of the data file which is the file name without the suffix,
+     * for example {@code data/public.users.csv} is loaded into the {@code public.users} table.
+     *
+     * @param resource the resource path
+     * @return the table name
+     */
+    public static String table(String resource) {
+        int start = resource.lastIndexOf('/') + 1;
+        int end = resource.lastIndexOf('.');
+        return resource.substring(start, end);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !eof) {
+            next = readRecord();
+        }
+        return next != null;
+    }
+
+    @Override
+    public String[] next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        String[] result = next;
+        next = null;
+        return result;
+    }
+
+    private String[] readRecord() {
+        try {
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            boolean inQuotes = false;
+            int c;
+            while ((c = reader.read()) != -1) {
+                char ch = (char) c;
+                if (inQuotes) {
+                    if (ch == '"') {
+                        reader.mark(1);
+                        if (reader.read() == '"') {
+                            field.append('"');
+                        } else {
+                            reader.reset();
+                            inQuotes = false;
+                        }
+                    } else {
+                        field.append(ch);
+                    }
+                } else if (ch == '"') {
+                    inQuotes = true;
+                    quoted = true;
+                } else if (ch == delimiter) {
+                    fields.add(value(field, quoted));
+                    field.setLength(0);
+                    quoted = false;
+                } else if (ch == '\n' || ch == '\r') {
+                    if (ch == '\r') {
+                        reader.mark(1);
+                        if (reader.read() != '\n') {
+                            reader.reset();
+                        }
+                    }
+                    if (fields.isEmpty() && field.length() == 0 && !quoted) {
+                        continue;
+                    }
+                    fields.add(value(field, quoted));
+                    return fields.toArray(new String[0]);
+                } else {
+                    field.append(ch);
+                }
+            }
+            eof = true;
+            if (fields.isEmpty() && field.length() == 0 && !quoted) {
+                return null;
+            }
+            fields.add(value(field, quoted));
+            return fields.toArray(new String[0]);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Error read the data file", ex);
+        }
+    }
+
+    private static String value(StringBuilder field, boolean quoted) {
+        if (!quoted && field.length() == 0) {
+            return null;
+        }
+        return field.toString();
+    }
+}
@@ -40,4 +40,12 @@ public class Migration {
     public Boolean success;
 
     public Boolean exists;
+
+    public boolean transactional = true;
+
+    public Long lockTimeout;
+
+    public Long statementTimeout;
+
+    public int bundleIndex = -1;
 }
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2020 lorislab.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vn.com.acbs.digital.migration.toolkit.models;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable plan of the bundled migrations. The versioned migrations are sorted by version and the
+ * pending migrations are found by binary search, the repeatable migrations are indexed by description.
+ * The plan is created once when the application starts and hands out the views of its lists.
+ */
+public final class MigrationPlan {
+
+    private static final MigrationPlan EMPTY = new MigrationPlan(Collections.emptyList(), Collections.emptyList(), null);
+
+    private final List<VersionedMigration> versioned;
+
+    private final List<Resource> repeatable;
+
+    private final Map<String, Resource> repeatableIndex;
+
+    private final VersionedMigration baseline;
+
+    private MigrationPlan(List<VersionedMigration> versioned, List<Resource> repeatable, VersionedMigration baseline) {
+        this.versioned = Collections.unmodifiableList(versioned);
+        this.baseline = baseline;
+        this.repeatable = Collections.unmodifiableList(repeatable);
+        Map<String, Resource> index = new HashMap<>(repeatable.size() * 2);
+        for (Resource r : repeatable) {
+            index.put(r.description, r);
+        }
+        this.repeatableIndex = Collections.unmodifiableMap(index);
+    }
+
+    /**
+     * Creates the plan for the migrations.
+     *
+     * @param versioned  the versioned migrations
+     * @param repeatable the repeatable migrations
+     * @return the migration plan
+     */
+    public static MigrationPlan of(List<VersionedMigration> versioned, List<Resource> repeatable) {
+        return of(versioned, repeatable, null);
+    }
+
+    /**
+     * Creates the plan for the migrations with the baseline scripts. The plan uses the baseline with the highest version.
+     *
+     * @param versioned  the versioned migrations
+     * @param repeatable the repeatable migrations
+     * @param baselines  the baseline scripts
+     * @return the migration plan
+     */
+    public static MigrationPlan of(List<VersionedMigration> versioned, List<Resource> repeatable, List<VersionedMigration> baselines) {
+        if ((versioned == null || versioned.isEmpty()) && (repeatable == null || repeatable.isEmpty())) {
+            return EMPTY;
+        }
+        List<VersionedMigration> v = versioned == null ? new ArrayList<>() : new ArrayList<>(versioned);
+        List<Resource> r = repeatable == null ? new ArrayList<>() : new ArrayList<>(repeatable);
+        Collections.sort(v);
+        Collections.sort(r);
+        VersionedMigration b = baselines == null ? null : baselines.stream().max(VersionedMigration::compareTo).orElse(null);
+        return new MigrationPlan(v, r, b);
+    }
+
+    public static MigrationPlan empty() {
+        return EMPTY;
+    }
+
+    public boolean isEmpty() {
+        return versioned.isEmpty() && repeatable.isEmpty();
+    }
+
+    public List<VersionedMigration> getVersioned() {
+        return versioned;
+    }
+
+    public List<Resource> getRepeatable() {
+        return repeatable;
+    }
+
+    /**
+     * Gets the highest version of the versioned migrations.
+     *
+     * @return the highest version or {@code null} if there is no versioned migration
+     */
+    public Version getLatestVersion() {
+        return versioned.isEmpty() ? null : versioned.get(versioned.size() - 1);
+    }
+
+    /**
+     * Gets the versioned migrations with the bigger version than the database version.
+     *
+     * @param version the database version or {@code null} for the empty database
+     * @return the view of the pending migrations
+     */
+    public List<VersionedMigration> pending(String version) {
+        if (version == null) {
+            return versioned;
+        }
+        Version current = Version.of(version);
+        // the first migration bigger than the current version
+        int low = 0;
+        int high = versioned.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (versioned.get(mid).compareTo(current) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return versioned.subList(low, versioned.size());
+    }
+
+    /**
+     * Gets the baseline script applied on the empty database instead of the versioned migrations it covers.
+     *
+     * @return the baseline or {@code null} if the plan has no baseline
+     */
+    public VersionedMigration getBaseline() {
+        return baseline;
+    }
+
+    /**
+     * Gets the versioned migrations covered by the baseline history row, the migrations up to the version of the row.
+     *
+     * @param baseline the history row of the baseline script
+     * @return the view of the covered migrations
+     */
+    public List<VersionedMigration> baselineCovered(Migration baseline) {
+        return versioned.subList(0, versioned.size() - pending(baseline.version).size());
+    }
+
+    /**
+     * Gets the repeatable migration by description.
+     *
+     * @param description the description of the repeatable migration
+     * @return the repeatable migration or {@code null} if the plan does not contain it
+     */
+    public Resource repeatable(String description) {
+        return repeatableIndex.get(description);
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2020 lorislab.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vn.com.acbs.digital.migration.toolkit.models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class MigrationResult {
+
+    /**
+     * The database version after the run, {@code null} if no versioned migration is applied.
+     */
+    public String version;
+
+    /**
+     * The executed scripts in execution order.
+     */
+    public List<String> scripts = new ArrayList<>();
+
+    @Override
+    public String toString() {
+        return "MigrationResult{" +
+                "version='" + version + '\'' +
+                ", scripts=" + scripts.size() +
+                '}';
+    }
+}
@@ -27,6 +27,35 @@ public class Resource implements Comparable<Resource> {
 
     public boolean repeatable;
 
+    /**
+     * {@code true} for the baseline script {@code B<version>__<description>.sql} which creates the schema
+     * of all versioned migrations up to its version on the empty database.
+     */
+    public boolean baseline;
+
+    /**
+     * {@code false} if the script runs outside of the transaction, set by the {@code -- toolkit:transaction=false}
+     * directive of the script header.
+     */
+    public boolean transactional = true;
+
+    /**
+     * The lock timeout of the script in milliseconds set by the {@code -- toolkit:lock-timeout} directive,
+     * {@code null} for the default of the configuration.
+     */
+    public Long lockTimeout;
+
+    /**
+     * The statement timeout of the script in milliseconds set by the {@code -- toolkit:statement-timeout} directive,
+     * {@code null} for the default of the configuration.
+     */
+    public Long statementTimeout;
+
+    /**
+     * The position of the script in the script bundle, {@code -1} if the script is not bundled.
+     */
+    public int bundleIndex = -1;
+
     @Override
     public String toString() {
         return "Resource{" +
@@ -34,6 +63,10 @@ public class Resource implements Comparable<Resource> {
                 ", description='" + description + '\'' +
                 ", path='" + script + '\'' +
                 ", repeatable=" + repeatable +
+                ", baseline=" + baseline +
+                ", transactional=" + transactional +
+                ", lockTimeout=" + lockTimeout +
+                ", statementTimeout=" + statementTimeout +
                 '}';
     }
 
@@ -17,11 +17,21 @@ package vn.com.acbs.digital.migration.toolkit.models;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
-import java.util.zip.CRC32;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 public class ResourceLoader {
 
@@ -31,13 +41,38 @@ public class ResourceLoader {
 
     public static final String PREFIX_REPEATABLE_MIG = "R";
 
+    public static final String PREFIX_BASELINE_MIG = "B";
+
+    public static final String DIRECTIVE_PREFIX = "toolkit:";
+
+    public static final String DIRECTIVE_TRANSACTION = "transaction";
+
+    public static final String DIRECTIVE_LOCK_TIMEOUT = "lock-timeout";
+
+    public static final String DIRECTIVE_STATEMENT_TIMEOUT = "statement-timeout";
+
+    public static final String DIRECTIVE_LINT = "lint";
+
+    private static final Pattern DURATION = Pattern.compile("(\\d+)\\s*(ms|s|min|h)?");
+
     public static void validateResources(List<Resource> resources) {
         Set<String> version = new HashSet<>();
+        Set<String> baseline = new HashSet<>();
         for (Resource r : resources) {
-            if (!r.repeatable && !version.add(r.version)) {
+            if (r.baseline) {
+                if (!baseline.add(r.version)) {
+                    throw new IllegalStateException("Found more than one baseline with version " + r.version);
+                }
+            } else if (!r.repeatable && !version.add(r.version)) {
                 throw new IllegalStateException("Found more than one migration with version " + r.version);
             }
         }
+        // the history rows of the baseline end with the migration of the same version
+        for (String b : baseline) {
+            if (!version.contains(b)) {
+                throw new IllegalStateException("Found baseline " + b + " without the migration with version " + b);
+            }
+        }
     }
 
     public static Resource createFrom(String item) {
@@ -63,8 +98,10 @@ public class ResourceLoader {
                 result.repeatable = false;
             } else if (PREFIX_REPEATABLE_MIG.equals(prefix)) {
                 result.repeatable = true;
+            } else if (PREFIX_BASELINE_MIG.equals(prefix)) {
+                result.baseline = true;
             } else {
-                throw new IllegalArgumentException("Wrong prefix of the migration script. Values: [V, R]. Found: " + prefix);
+                throw new IllegalArgumentException("Wrong prefix of the migration script. Values: [V, R, B]. Found: " + prefix);
             }
 
             // remove prefix
@@ -89,17 +126,156 @@ public class ResourceLoader {
             }
             return result;
         } catch (Exception ex) {
-            throw new IllegalArgumentException("Wrong name of migration script. ['V{ver}__{desc}.sql'|'R__{desc}.sql']. Script: " + item, ex);
+            throw new IllegalArgumentException("Wrong name of migration script. ['V{ver}__{desc}.sql'|'R__{desc}.sql'|'B{ver}__{desc}.sql']. Script: " + item, ex);
         }
     }
 
-    public static long checksum(byte[] value) {
-        if (value == null || value.length <= 0) {
-            return 0;
+    /**
+     * Creates the resource of the script and applies the directives of the script header.
+     *
+     * @param item    the script path
+     * @param content the script content
+     * @return the resource
+     */
+    public static Resource createFrom(String item, byte[] content) {
+        Resource result = createFrom(item);
+        applyDirectives(result, content);
+        return result;
+    }
+
+    /**
+     * Applies the directives of the script header to the resource. The header is the leading comment lines
+     * of the script, a directive is the line {@code -- toolkit:name=value}.
+     *
+     * @param resource the resource
+     * @param content  the script content
+     */
+    public static void applyDirectives(Resource resource, byte[] content) {
+        for (Map.Entry<String, String> e : directives(content).entrySet()) {
+            if (DIRECTIVE_TRANSACTION.equals(e.getKey())) {
+                resource.transactional = parseBoolean(resource, e.getKey(), e.getValue());
+            } else if (DIRECTIVE_LOCK_TIMEOUT.equals(e.getKey())) {
+                resource.lockTimeout = parseMillis(resource, e.getKey(), e.getValue());
+            } else if (DIRECTIVE_STATEMENT_TIMEOUT.equals(e.getKey())) {
+                resource.statementTimeout = parseMillis(resource, e.getKey(), e.getValue());
+            } else if (DIRECTIVE_LINT.equals(e.getKey())) {
+                // used by the build time lint
+                parseBoolean(resource, e.getKey(), e.getValue());
+            } else {
+                throw new IllegalArgumentException("Unknown directive '" + e.getKey() + "' of the migration script " + resource.script);
+            }
+        }
+        // the lock timeout is retried by running the script again, the autocommit script can not run twice
+        if (!resource.transactional && resource.lockTimeout != null) {
+            throw new IllegalArgumentException("The directive '" + DIRECTIVE_LOCK_TIMEOUT + "' is not supported with '"
+                    + DIRECTIVE_TRANSACTION + "=false' of the migration script " + resource.script);
+        }
+    }
+
+    /**
+     * Gets the directives of the script header.
+     *
+     * @param content the script content
+     * @return the directive values by name
+     */
+    public static Map<String, String> directives(byte[] content) {
+        Map<String, String> result = new LinkedHashMap<>();
+        if (content == null) {
+            return result;
+        }
+        int start = 0;
+        while (start < content.length) {
+            int end = start;
+            while (end < content.length && content[end] != '\n') {
+                end++;
+            }
+            String line = new String(content, start, end - start, StandardCharsets.UTF_8).trim();
+            start = end + 1;
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (!line.startsWith("--")) {
+                break;
+            }
+            line = line.substring(2).trim();
+            if (!line.startsWith(DIRECTIVE_PREFIX)) {
+                continue;
+            }
+            line = line.substring(DIRECTIVE_PREFIX.length());
+            int index = line.indexOf('=');
+            if (index <= 0) {
+                throw new IllegalArgumentException("Wrong directive '" + line + "'. Expected: -- " + DIRECTIVE_PREFIX + "name=value");
+            }
+            result.put(line.substring(0, index).trim().toLowerCase(Locale.ROOT), line.substring(index + 1).trim());
+        }
+        return result;
+    }
+
+    /**
+     * Parses the duration in the format of the PostgreSQL settings, the number without the unit is in milliseconds.
+     */
+    private static long parseMillis(Resource resource, String name, String value) {
+        Matcher matcher = DURATION.matcher(value);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Wrong value '" + value + "' of the directive '" + name + "' of the migration script "
+                    + resource.script + ". Expected: <number>[ms|s|min|h]");
+        }
+        long number = Long.parseLong(matcher.group(1));
+        String unit = matcher.group(2);
+        if (unit == null || "ms".equals(unit)) {
+            return number;
+        }
+        switch (unit) {
+            case "s":
+                return TimeUnit.SECONDS.toMillis(number);
+            case "min":
+                return TimeUnit.MINUTES.toMillis(number);
+            default:
+                return TimeUnit.HOURS.toMillis(number);
+        }
+    }
+
+    private static boolean parseBoolean(Resource resource, String name, String value) {
+        if ("true".equalsIgnoreCase(value)) {
+            return true;
+        }
+        if ("false".equalsIgnoreCase(value)) {
+            return false;
         }
-        CRC32 crc = new CRC32();
-        crc.update(value);
-        return crc.getValue();
+        throw new IllegalArgumentException("Wrong value '" + value + "' of the directive '" + name + "' of the migration script "
+                + resource.script + ". Values: [true, false]");
+    }
+
+    /**
+     * Creates the digest of the repeatable migrations. The digest is the MD5 hex of the lines
+     * {@code description:checksum} ordered by description, which is the same value the database
+     * computes from the history table.
+     *
+     * @param resources the repeatable migrations
+     * @return the digest or {@code null} for the empty list
+     */
+    public static String repeatableDigest(List<Resource> resources) {
+        if (resources == null || resources.isEmpty()) {
+            return null;
+        }
+        String value = resources.stream()
+                .sorted(Comparator.comparing(r -> r.description))
+                .map(r -> r.description + ":" + r.checksum)
+                .collect(Collectors.joining("\n"));
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(value.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    public static long checksum(byte[] value) {
+        return ChecksumAlgorithm.CRC32.checksum(value);
     }
 
     public static byte[] loadResourceContent(String path) {
@@ -128,6 +304,10 @@ public class ResourceLoader {
     }
 
     public static String loadResource(String script) {
+        ByteBuffer content = ScriptBundle.get().content(script);
+        if (content != null) {
+            return content.hasRemaining() ? StandardCharsets.UTF_8.decode(content).toString() : null;
+        }
         byte[] data = loadResourceContent(script);
         if (data == null || data.length <= 0) {
             return null;
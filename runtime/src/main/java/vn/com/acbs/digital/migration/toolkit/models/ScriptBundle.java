@@ -0,0 +1,240 @@
+/*
+ * Copyright 2020 lorislab.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vn.com.acbs.digital.migration.toolkit.models;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+/**
+ * Migration scripts compiled at build time into one resource. The bundle starts with the index table
+ * (script, offset, length) followed by the UTF-8 payload of all scripts which is optionally deflated.
+ * The scripts are returned as read-only slices of the payload without copying. The bundle file is memory-mapped,
+ * the bundle inside of the jar is read into the heap once because the compressed jar entry can not be sliced.
+ */
+public class ScriptBundle {
+
+    public static final String BUNDLE = "META-INF/migration-toolkit/scripts.bundle";
+
+    private static final int MAGIC = 0x4D544B42;
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int FLAG_DEFLATE = 1;
+
+    private static final ScriptBundle EMPTY = new ScriptBundle(new HashMap<>(), new int[0], new int[0], ByteBuffer.allocate(0));
+
+    private static volatile ScriptBundle instance;
+
+    private final Map<String, Integer> index;
+
+    private final int[] offsets;
+
+    private final int[] lengths;
+
+    private final ByteBuffer payload;
+
+    private ScriptBundle(Map<String, Integer> index, int[] offsets, int[] lengths, ByteBuffer payload) {
+        this.index = index;
+        this.offsets = offsets;
+        this.lengths = lengths;
+        this.payload = payload;
+    }
+
+    /**
+     * Gets the bundle of the application. The bundle is loaded once, an empty bundle is returned
+     * if the application does not contain the bundle resource.
+     *
+     * @return the bundle of the application
+     */
+    public static ScriptBundle get() {
+        ScriptBundle result = instance;
+        if (result == null) {
+            synchronized (ScriptBundle.class) {
+                result = instance;
+                if (result == null) {
+                    result = load();
+                    instance = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static ScriptBundle load() {
+        URL url = ScriptBundle.class.getClassLoader().getResource(BUNDLE);
+        if (url == null) {
+            url = Thread.currentThread().getContextClassLoader().getResource(BUNDLE);
+        }
+        if (url == null) {
+            return EMPTY;
+        }
+        try {
+            if ("file".equals(url.getProtocol())) {
+                try (FileChannel channel = FileChannel.open(Paths.get(url.toURI()), StandardOpenOption.READ)) {
+                    return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+                }
+            }
+            try (InputStream in = url.openStream()) {
+                return read(ByteBuffer.wrap(in.readAllBytes()));
+            }
+        } catch (IOException | URISyntaxException ex) {
+            throw new IllegalStateException("Error read the migration bundle " + url, ex);
+        }
+    }
+
+    /**
+     * Reads the bundle from the buffer.
+     *
+     * @param buffer the buffer with the bundle content
+     * @return the bundle
+     */
+    public static ScriptBundle read(ByteBuffer buffer) {
+        ByteBuffer data = buffer.duplicate();
+        if (data.getInt() != MAGIC || data.getInt() != FORMAT_VERSION) {
+            throw new IllegalStateException("Not supported format of the migration bundle");
+        }
+        int flags = data.getInt();
+        int count = data.getInt();
+        Map<String, Integer> index = new HashMap<>(count * 2);
+        int[] offsets = new int[count];
+        int[] lengths = new int[count];
+        for (int i = 0; i < count; i++) {
+            byte[] name = new byte[data.getShort() & 0xFFFF];
+            data.get(name);
+            index.put(new String(name, StandardCharsets.UTF_8), i);
+            offsets[i] = data.getInt();
+            lengths[i] = data.getInt();
+        }
+        int size = data.getInt();
+        ByteBuffer payload = data.slice();
+        if ((flags & FLAG_DEFLATE) != 0) {
+            payload = inflate(payload, size);
+        }
+        return new ScriptBundle(index, offsets, lengths, payload.asReadOnlyBuffer());
+    }
+
+    private static ByteBuffer inflate(ByteBuffer data, int size) {
+        byte[] input = new byte[data.remaining()];
+        data.get(input);
+        byte[] result = new byte[size];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(input);
+            int length = 0;
+            while (length < size && !inflater.finished()) {
+                length += inflater.inflate(result, length, size - length);
+            }
+        } catch (DataFormatException ex) {
+            throw new IllegalStateException("Error inflate the migration bundle", ex);
+        } finally {
+            inflater.end();
+        }
+        return ByteBuffer.wrap(result);
+    }
+
+    /**
+     * Creates the bundle content for the scripts.
+     *
+     * @param scripts  the scripts content by script path, the iteration order is the position of the script
+     * @param compress {@code true} to deflate the payload
+     * @return the bundle content
+     */
+    public static byte[] write(Map<String, byte[]> scripts, boolean compress) {
+        try {
+            ByteArrayOutputStream payload = new ByteArrayOutputStream();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            DataOutputStream header = new DataOutputStream(out);
+            header.writeInt(MAGIC);
+            header.writeInt(FORMAT_VERSION);
+            header.writeInt(compress ? FLAG_DEFLATE : 0);
+            header.writeInt(scripts.size());
+            for (Map.Entry<String, byte[]> e : scripts.entrySet()) {
+                byte[] name = normalize(e.getKey()).getBytes(StandardCharsets.UTF_8);
+                header.writeShort(name.length);
+                header.write(name);
+                header.writeInt(payload.size());
+                header.writeInt(e.getValue().length);
+                payload.write(e.getValue());
+            }
+            header.writeInt(payload.size());
+            if (compress) {
+                try (DeflaterOutputStream deflater = new DeflaterOutputStream(header, new Deflater(Deflater.BEST_SPEED))) {
+                    payload.writeTo(deflater);
+                }
+            } else {
+                payload.writeTo(header);
+            }
+            header.flush();
+            return out.toByteArray();
+        } catch (IOException ex) {
+            throw new IllegalStateException("Error create the migration bundle", ex);
+        }
+    }
+
+    /**
+     * Gets the content of the script.
+     *
+     * @param script the script path
+     * @return the read-only slice of the script content or {@code null} if the bundle does not contain the script
+     */
+    public ByteBuffer content(String script) {
+        Integer id = index.get(normalize(script));
+        return id == null ? null : content(id);
+    }
+
+    /**
+     * Gets the content of the script at the position of the bundle.
+     *
+     * @param id the position of the script
+     * @return the read-only slice of the script content or {@code null} if the position is not in the bundle
+     */
+    public ByteBuffer content(int id) {
+        if (id < 0 || id >= offsets.length) {
+            return null;
+        }
+        return payload.duplicate().position(offsets[id]).limit(offsets[id] + lengths[id]).slice();
+    }
+
+    public boolean contains(String script) {
+        return index.containsKey(normalize(script));
+    }
+
+    public int size() {
+        return offsets.length;
+    }
+
+    private static String normalize(String script) {
+        if (script != null && script.startsWith("/")) {
+            return script.substring(1);
+        }
+        return script;
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright 2020 lorislab.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vn.com.acbs.digital.migration.toolkit.models;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.zip.CheckedInputStream;
+
+/**
+ * Streaming source of the script content. The content is decoded incrementally and split into statements
+ * while it is read, the checksum and the size are computed in the same pass. Bundled scripts are read from
+ * the bundle slice, {@code file} resources are memory-mapped and other resources are streamed from the
+ * class loader.
+ */
+public class ScriptSource implements Closeable {
+
+    private final String script;
+
+    private final long size;
+
+    private final CheckedInputStream input;
+
+    private long bytes;
+
+    private int statements;
+
+    private ScriptSource(String script, long size, InputStream input, ChecksumAlgorithm algorithm) {
+        this.script = script;
+        this.size = size;
+        this.input = new CheckedInputStream(new CountingInputStream(input), algorithm.create());
+    }
+
+    /**
+     * Opens the script.
+     *
+     * @param script    the script path
+     * @param algorithm the checksum algorithm
+     * @return the script source or {@code null} if the script does not exist
+     */
+    public static ScriptSource open(String script, ChecksumAlgorithm algorithm) {
+        return open(script, -1, algorithm);
+    }
+
+    /**
+     * Opens the script, the bundled script is taken by its position in the bundle.
+     *
+     * @param script    the script path
+     * @param index     the position of the script in the bundle, {@code -1} to look up the script path
+     * @param algorithm the checksum algorithm
+     * @return the script source or {@code null} if the script does not exist
+     */
+    public static ScriptSource open(String script, int index, ChecksumAlgorithm algorithm) {
+        ScriptBundle bundle = ScriptBundle.get();
+        ByteBuffer content = index >= 0 ? bundle.content(index) : null;
+        if (content == null) {
+            content = bundle.content(script);
+        }
+        if (content != null) {
+            return new ScriptSource(script, content.remaining(), new ByteBufferInputStream(content), algorithm);
+        }
+        String path = script.startsWith("/") ? script : "/" + script;
+        URL url = ScriptSource.class.getResource(path);
+        if (url == null) {
+            url = Thread.currentThread().getContextClassLoader().getResource(path.substring(1));
+        }
+        if (url == null) {
+            return null;
+        }
+        try {
+            if ("file".equals(url.getProtocol())) {
+                try (FileChannel channel = FileChannel.open(Paths.get(url.toURI()), StandardOpenOption.READ)) {
+                    long size = channel.size();
+                    if (size <= Integer.MAX_VALUE) {
+                        return new ScriptSource(script, size, new ByteBufferInputStream(channel.map(FileChannel.MapMode.READ_ONLY, 0, size)), algorithm);
+                    }
+                }
+            }
+            return new ScriptSource(script, -1, url.openStream(), algorithm);
+        } catch (IOException | URISyntaxException ex) {
+            throw new IllegalStateException("Error read the migration resource " + script, ex);
+        }
+    }
+
+    public String getScript() {
+        return script;
+    }
+
+    /**
+     * Gets the size of the script in bytes.
+     *
+     * @return the size of the script or {@code -1} if the size is not known before reading
+     */
+    public long getSize() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Gets the checksum of the content read so far.
+     *
+     * @return the checksum
+     */
+    public long getChecksum() {
+        return bytes > 0 ? input.getChecksum().getValue() : 0;
+    }
+
+    /**
+     * Gets the number of bytes read so far.
+     *
+     * @return the number of bytes
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Gets the number of statements read so far.
+     *
+     * @return the number of statements
+     */
+    public int getStatements() {
+        return statements;
+    }
+
+    /**
+     * Gets the statements of the script. The statements are read one at a time.
+     *
+     * @return the iterator of the statements
+     */
+    public Iterator<SqlStatement> statements() {
+        SqlStatementSplitter splitter = new SqlStatementSplitter(reader());
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return splitter.hasNext();
+            }
+
+            @Override
+            public SqlStatement next() {
+                SqlStatement result = splitter.next();
+                statements = result.index;
+                return result;
+            }
+        };
+    }
+
+    /**
+     * Reads the whole script.
+     *
+     * @return the script content
+     */
+    public String readAll() {
+        try {
+            return new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Error read the migration resource " + script, ex);
+        }
+    }
+
+    public Reader reader() {
+        return new InputStreamReader(input, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() {
+        try {
+            input.close();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private class CountingInputStream extends InputStream {
+
+        private final InputStream delegate;
+
+        CountingInputStream(InputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int c = delegate.read();
+            if (c != -1) {
+                bytes++;
+            }
+            return c;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = delegate.read(b, off, len);
+            if (n > 0) {
+                bytes += n;
+            }
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
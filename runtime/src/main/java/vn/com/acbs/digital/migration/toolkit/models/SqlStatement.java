@@ -0,0 +1,48 @@
+/*
+ * Copyright 2020 lorislab.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vn.com.acbs.digital.migration.toolkit.models;
+
+public class SqlStatement {
+
+    /**
+     * The position of the statement in the script starting with 1.
+     */
+    public int index;
+
+    /**
+     * The line of the script where the statement starts.
+     */
+    public int line;
+
+    public String sql;
+
+    public SqlStatement() {
+    }
+
+    public SqlStatement(int index, int line, String sql) {
+        this.index = index;
+        this.line = line;
+        this.sql = sql;
+    }
+
+    @Override
+    public String toString() {
+        return "SqlStatement{" +
+                "index=" + index +
+                ", line=" + line +
+                '}';
+    }
+}
@@ -0,0 +1,397 @@
+/*
+ * Copyright 2020 lorislab.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vn.com.acbs.digital.migration.toolkit.models;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Splits the SQL script into statements while reading it. The splitter knows the PostgreSQL string
+ * literals, escape strings, quoted identifiers, dollar quotes, line comments, nested block comments,
+ * parentheses like the {@code CREATE RULE ... DO (...)} actions and the {@code BEGIN ATOMIC ... END}
+ * function bodies. Comments before a statement and empty statements are skipped, the comments inside
+ * of the statement are kept unless the splitter strips them.
+ * <p>
+ * If the splitter can not tell where the statement ends, the rest of the script is returned as one
+ * statement and the server splits it.
+ */
+public class SqlStatementSplitter implements Iterator<SqlStatement> {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private enum State {
+        NORMAL, STRING, ESCAPE_STRING, IDENTIFIER, LINE_COMMENT, BLOCK_COMMENT, DOLLAR_QUOTE
+    }
+
+    private final Reader reader;
+
+    private final boolean comments;
+
+    private final char[] buffer = new char[BUFFER_SIZE];
+
+    private int position;
+
+    private int limit;
+
+    private int pushback = -1;
+
+    private int line = 1;
+
+    private int index;
+
+    private SqlStatement next;
+
+    private boolean eof;
+
+    public SqlStatementSplitter(Reader reader) {
+        this(reader, true);
+    }
+
+    /**
+     * Creates the splitter.
+     *
+     * @param reader   the reader of the script
+     * @param comments {@code false} to strip the comments inside of the statements
+     */
+    public SqlStatementSplitter(Reader reader, boolean comments) {
+        this.reader = reader;
+        this.comments = comments;
+    }
+
+    public static List<SqlStatement> split(String sql) {
+        return split(sql, true);
+    }
+
+    public static List<SqlStatement> split(String sql, boolean comments) {
+        List<SqlStatement> result = new ArrayList<>();
+        if (sql != null) {
+            new SqlStatementSplitter(new StringReader(sql), comments).forEachRemaining(result::add);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !eof) {
+            next = readStatement();
+        }
+        return next != null;
+    }
+
+    @Override
+    public SqlStatement next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        SqlStatement result = next;
+        next = null;
+        return result;
+    }
+
+    private SqlStatement readStatement() {
+        StringBuilder sql = new StringBuilder();
+        StringBuilder word = new StringBuilder();
+        String previousWord = null;
+        State state = State.NORMAL;
+        String tag = null;
+        int depth = 0;
+        int parentheses = 0;
+        int atomic = 0;
+        int start = 0;
+        boolean content = false;
+        char last = 0;
+        char beforeLast = 0;
+
+        int c;
+        while ((c = read()) != -1) {
+            char ch = (char) c;
+            switch (state) {
+                case NORMAL:
+                    if (isWordPart(ch)) {
+                        word.append(ch);
+                    } else if (word.length() > 0) {
+                        atomic = atomic(atomic, previousWord, word.toString());
+                        previousWord = word.toString();
+                        word.setLength(0);
+                    }
+                    if (ch == ';' && parentheses == 0 && atomic == 0) {
+                        if (content) {
+                            return new SqlStatement(++index, start, sql.toString().trim());
+                        }
+                        continue;
+                    }
+                    if (ch == '-' && peek() == '-') {
+                        state = State.LINE_COMMENT;
+                    } else if (ch == '/' && peek() == '*') {
+                        state = State.BLOCK_COMMENT;
+                        depth = 1;
+                        append(sql, content && comments, ch);
+                        ch = (char) read();
+                    } else if (!Character.isWhitespace(ch)) {
+                        if (!content) {
+                            content = true;
+                            start = line;
+                        }
+                        if (ch == '\'') {
+                            state = (last == 'E' || last == 'e') && !isIdentifierPart(beforeLast) ? State.ESCAPE_STRING : State.STRING;
+                        } else if (ch == '"') {
+                            state = State.IDENTIFIER;
+                        } else if (ch == '(') {
+                            parentheses++;
+                        } else if (ch == ')') {
+                            if (parentheses == 0) {
+                                sql.append(ch);
+                                return readRest(sql, start);
+                            }
+                            parentheses--;
+                        } else if (ch == '$' && !isIdentifierPart(last)) {
+                            tag = readTag(sql);
+                            if (tag != null) {
+                                state = State.DOLLAR_QUOTE;
+                            }
+                            beforeLast = last;
+                            last = sql.charAt(sql.length() - 1);
+                            continue;
+                        }
+                    }
+                    beforeLast = last;
+                    last = ch;
+                    break;
+                case STRING:
+                    if (ch == '\\') {
+                        // the backslash escapes the quote if standard_conforming_strings is off
+                        sql.append(ch);
+                        return readRest(sql, start);
+                    }
+                    // the doubled quote is read as the end and the start of the quoted text
+                    if (ch == '\'') {
+                        state = State.NORMAL;
+                        last = ch;
+                    }
+                    break;
+                case IDENTIFIER:
+                    if (ch == '"') {
+                        state = State.NORMAL;
+                        last = ch;
+                    }
+                    break;
+                case ESCAPE_STRING:
+                    if (ch == '\\') {
+                        sql.append(ch);
+                        c = read();
+                        if (c == -1) {
+                            continue;
+                        }
+                        ch = (char) c;
+                    } else if (ch == '\'') {
+                        if (peek() == '\'') {
+                            // the doubled quote does not end the escape string
+                            sql.append(ch);
+                            ch = (char) read();
+                        } else {
+                            state = State.NORMAL;
+                            last = ch;
+                        }
+                    }
+                    break;
+                case LINE_COMMENT:
+                    if (ch == '\n') {
+                        state = State.NORMAL;
+                        last = ch;
+                    }
+                    break;
+                case BLOCK_COMMENT:
+                    if (ch == '*' && peek() == '/') {
+                        append(sql, content && comments, ch);
+                        ch = (char) read();
+                        if (--depth == 0) {
+                            state = State.NORMAL;
+                            last = ' ';
+                            if (!comments) {
+                                // the stripped comment separates the tokens
+                                ch = ' ';
+                            }
+                        }
+                    } else if (ch == '/' && peek() == '*') {
+                        append(sql, content && comments, ch);
+                        ch = (char) read();
+                        depth++;
+                    }
+                    break;
+                case DOLLAR_QUOTE:
+                    if (ch == '$') {
+                        sql.append(ch);
+                        if (matchTag(sql, tag)) {
+                            state = State.NORMAL;
+                            last = '$';
+                        }
+                        continue;
+                    }
+                    break;
+            }
+            append(sql, content && (comments || (state != State.LINE_COMMENT && state != State.BLOCK_COMMENT)), ch);
+        }
+        eof = true;
+        if (content) {
+            return new SqlStatement(++index, start, sql.toString().trim());
+        }
+        return null;
+    }
+
+    /**
+     * Reads the rest of the script into the statement.
+     *
+     * @return the statement with the rest of the script
+     */
+    private SqlStatement readRest(StringBuilder sql, int start) {
+        int c;
+        while ((c = read()) != -1) {
+            sql.append((char) c);
+        }
+        eof = true;
+        return new SqlStatement(++index, start, sql.toString().trim());
+    }
+
+    /**
+     * Counts the depth of the {@code BEGIN ATOMIC} function body. The {@code END} closes the body
+     * or the {@code CASE} expression inside of the body.
+     */
+    private static int atomic(int atomic, String previousWord, String word) {
+        if ("ATOMIC".equalsIgnoreCase(word) && "BEGIN".equalsIgnoreCase(previousWord)) {
+            return atomic + 1;
+        }
+        if (atomic > 0 && "CASE".equalsIgnoreCase(word)) {
+            return atomic + 1;
+        }
+        if (atomic > 0 && "END".equalsIgnoreCase(word)) {
+            return atomic - 1;
+        }
+        return atomic;
+    }
+
+    private static void append(StringBuilder sql, boolean content, char ch) {
+        if (content) {
+            sql.append(ch);
+        }
+    }
+
+    /**
+     * Reads the tag of the dollar quote after the opening {@code $}.
+     *
+     * @return the tag or {@code null} if the {@code $} does not start the dollar quote
+     */
+    private String readTag(StringBuilder sql) {
+        sql.append('$');
+        StringBuilder tag = new StringBuilder();
+        int c;
+        while ((c = read()) != -1) {
+            char ch = (char) c;
+            if (ch == '$') {
+                sql.append(tag).append('$');
+                return tag.toString();
+            }
+            if (Character.isLetter(ch) || ch == '_' || (tag.length() > 0 && Character.isDigit(ch))) {
+                tag.append(ch);
+            } else {
+                unread(c);
+                break;
+            }
+        }
+        sql.append(tag);
+        return null;
+    }
+
+    /**
+     * Matches the closing tag after the {@code $} inside of the dollar quote.
+     *
+     * @return {@code true} if the dollar quote is closed
+     */
+    private boolean matchTag(StringBuilder sql, String tag) {
+        for (int i = 0; i < tag.length(); i++) {
+            int c = read();
+            if (c == -1) {
+                return false;
+            }
+            if (c != tag.charAt(i)) {
+                unread(c);
+                return false;
+            }
+            sql.append((char) c);
+        }
+        int c = read();
+        if (c == '$') {
+            sql.append('$');
+            return true;
+        }
+        unread(c);
+        return false;
+    }
+
+    private static boolean isWordPart(char ch) {
+        return Character.isLetterOrDigit(ch) || ch == '_';
+    }
+
+    private static boolean isIdentifierPart(char ch) {
+        return Character.isLetterOrDigit(ch) || ch == '_' || ch == '$';
+    }
+
+    private int peek() {
+        int c = read();
+        unread(c);
+        return c;
+    }
+
+    private void unread(int c) {
+        if (c != -1) {
+            pushback = c;
+            if (c == '\n') {
+                line--;
+            }
+        }
+    }
+
+    private int read() {
+        int c;
+        if (pushback != -1) {
+            c = pushback;
+            pushback = -1;
+        } else {
+            if (position >= limit) {
+                try {
+                    limit = reader.read(buffer, 0, buffer.length);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException("Error read the SQL script", ex);
+                }
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            c = buffer[position++];
+        }
+        if (c == '\n') {
+            line++;
+        }
+        return c;
+    }
+}
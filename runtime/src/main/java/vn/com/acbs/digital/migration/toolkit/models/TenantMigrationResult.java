@@ -0,0 +1,48 @@
+/*
+ * Copyright 2020 lorislab.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vn.com.acbs.digital.migration.toolkit.models;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The aggregated result of the migration of the tenant schemas.
+ */
+public class TenantMigrationResult {
+
+    /**
+     * The results of the migrated schemas by schema.
+     */
+    public Map<String, MigrationResult> results = Collections.synchronizedMap(new TreeMap<>());
+
+    /**
+     * The errors of the failed schemas by schema.
+     */
+    public Map<String, Throwable> failures = Collections.synchronizedMap(new TreeMap<>());
+
+    public boolean isSuccess() {
+        return failures.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "TenantMigrationResult{" +
+                "migrated=" + results.size() +
+                ", failed=" + failures.keySet() +
+                '}';
+    }
+}
@@ -16,14 +16,18 @@
 package vn.com.acbs.digital.migration.toolkit.models;
 
 import java.util.Arrays;
-import java.util.List;
-import java.util.stream.Collectors;
 
+/**
+ * The version of the migration. The segments of the value are parsed once into the primitive array,
+ * only the {@code value} is recorded at build time and the segments are parsed again on the first compare.
+ */
 public class Version implements Comparable<Version> {
 
+    private static final long[] EMPTY = new long[0];
+
     public String value;
 
-    public List<Integer> numbers;
+    private transient volatile long[] numbers;
 
     public Version() {
     }
@@ -33,19 +37,74 @@ public class Version implements Comparable<Version> {
             throw new IllegalArgumentException("The migration version value is null!");
         }
         this.value = value;
-        this.numbers = Arrays.stream(value.split("\\.")).map(Integer::valueOf).collect(Collectors.toList());
+        this.numbers = parse(value);
     }
 
     public static Version of(String value) {
         return new Version(value);
     }
 
+    /**
+     * Parses the segments of the version. The trailing empty segments are ignored.
+     *
+     * @param value the version value
+     * @return the segments of the version
+     */
+    static long[] parse(String value) {
+        if (value == null) {
+            return EMPTY;
+        }
+        int end = value.length();
+        while (end > 0 && value.charAt(end - 1) == '.') {
+            end--;
+        }
+        if (end == 0) {
+            return EMPTY;
+        }
+        int count = 1;
+        for (int i = 0; i < end; i++) {
+            if (value.charAt(i) == '.') {
+                count++;
+            }
+        }
+        long[] result = new long[count];
+        int index = 0;
+        int digits = 0;
+        long number = 0;
+        for (int i = 0; i <= end; i++) {
+            char c = i < end ? value.charAt(i) : '.';
+            if (c == '.') {
+                if (digits == 0) {
+                    throw new IllegalArgumentException("Empty segment of the migration version " + value);
+                }
+                result[index++] = number;
+                number = 0;
+                digits = 0;
+            } else if (c >= '0' && c <= '9') {
+                if (number > (Long.MAX_VALUE - (c - '0')) / 10) {
+                    throw new IllegalArgumentException("Too big segment of the migration version " + value);
+                }
+                number = number * 10 + (c - '0');
+                digits++;
+            } else {
+                throw new IllegalArgumentException("Wrong character '" + c + "' in the migration version " + value);
+            }
+        }
+        return result;
+    }
+
+    private long[] numbers() {
+        long[] result = numbers;
+        if (result == null) {
+            result = parse(value);
+            numbers = result;
+        }
+        return result;
+    }
+
     @Override
     public int hashCode() {
-        if (numbers == null) {
-            return 0;
-        }
-        return numbers.hashCode();
+        return Arrays.hashCode(numbers());
     }
 
     @Override
@@ -76,18 +135,16 @@ public class Version implements Comparable<Version> {
         if (version == null) {
             return 1;
         }
-        int size = Math.max(numbers.size(), version.numbers.size());
+        long[] a = numbers();
+        long[] b = version.numbers();
+        int size = Math.min(a.length, b.length);
         for (int i = 0; i < size; i++) {
-            int result = get(numbers, i).compareTo(get(version.numbers, i));
-            if (result != 0) {
-                return result;
+            if (a[i] != b[i]) {
+                return a[i] < b[i] ? -1 : 1;
             }
         }
-        return 0;
-    }
-
-    private static Integer get(List<Integer> items, int i) {
-        return i < items.size() ? items.get(i) : Integer.MIN_VALUE;
+        // the missing segment is less than any segment
+        return Integer.compare(a.length, b.length);
     }
 
     @Override
@@ -19,6 +19,8 @@ import io.quarkus.runtime.annotations.ConfigItem;
 import io.quarkus.runtime.annotations.ConfigPhase;
 import io.quarkus.runtime.annotations.ConfigRoot;
 
+import vn.com.acbs.digital.migration.toolkit.models.ChecksumAlgorithm;
+
 import java.util.List;
 
 @ConfigRoot(name = "migration-toolkit", phase = ConfigPhase.BUILD_AND_RUN_TIME_FIXED)
@@ -44,7 +46,42 @@ public class ToolkitBuildTimeConfig {
     public String location;
 
     /**
-     * List of SQL scripts which will be run as test data after migration.
+     * The checksum algorithm of the migration scripts. The algorithm is stored in the history table,
+     * the history rows of the other algorithm are still validated.
+     */
+    @ConfigItem(defaultValue = "CRC32")
+    public ChecksumAlgorithm checksumAlgorithm;
+
+    /**
+     * {@code true} to keep the checksums of the discovered scripts in the build output directory. Only the new
+     * or changed scripts are read again by the next build or the dev mode reload.
+     */
+    @ConfigItem(defaultValue = "true")
+    public boolean checksumCache;
+
+    /**
+     * {@code true} to deflate the payload of the migration scripts bundle.
+     */
+    @ConfigItem
+    public boolean bundleCompress;
+
+    /**
+     * Lint of the migration scripts for the statements which hold the long ACCESS EXCLUSIVE lock or rewrite the table.
+     * {@code WARN} logs the findings, {@code FAIL} fails the build. The script is skipped with
+     * the {@code -- toolkit:lint=false} directive.
+     */
+    @ConfigItem(defaultValue = "NONE")
+    public LintMode lint;
+
+    /**
+     * {@code true} to publish the metrics of the migration runs if the Micrometer extension is present.
+     */
+    @ConfigItem(name = "metrics.enabled", defaultValue = "true")
+    public boolean metricsEnabled;
+
+    /**
+     * List of SQL scripts which will be run as test data after migration. The {@code .csv} and {@code .tsv}
+     * data files are loaded into the table of the file name, the first record contains the column names.
      */
     @ConfigItem(defaultValue = DEFAULT_TEST_DATA_SCRIPTS)
     public List<String> testDataScripts;
@@ -17,10 +17,19 @@ package vn.com.acbs.digital.migration.toolkit.runtime;
 
 import io.quarkus.arc.runtime.BeanContainer;
 import io.quarkus.runtime.annotations.Recorder;
+import io.smallrye.mutiny.Uni;
 import io.vertx.mutiny.sqlclient.Pool;
+import org.eclipse.microprofile.config.ConfigProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import vn.com.acbs.digital.migration.toolkit.TenantMigrationRunner;
 import vn.com.acbs.digital.migration.toolkit.Toolkit;
 import vn.com.acbs.digital.migration.toolkit.ToolkitConfig;
+import vn.com.acbs.digital.migration.toolkit.metrics.MicrometerMigrationMetrics;
+import vn.com.acbs.digital.migration.toolkit.models.ChecksumAlgorithm;
+import vn.com.acbs.digital.migration.toolkit.models.MigrationPlan;
 import vn.com.acbs.digital.migration.toolkit.models.Resource;
+import vn.com.acbs.digital.migration.toolkit.models.TenantMigrationResult;
 import vn.com.acbs.digital.migration.toolkit.models.VersionedMigration;
 
 import javax.enterprise.inject.Default;
@@ -29,16 +38,44 @@ import java.util.List;
 @Recorder
 public class ToolkitRecorder {
 
+    private static final Logger log = LoggerFactory.getLogger(ToolkitRecorder.class);
+
+    private static final String POOL_MAX_SIZE = "quarkus.datasource.reactive.max-size";
+
+    private static final int DEFAULT_POOL_MAX_SIZE = 20;
+
     public static List<VersionedMigration> versionedMigrations;
 
     public static List<Resource> repeatableMigrations;
 
+    public static List<VersionedMigration> baselineMigrations;
+
     public static List<String> afterMigrationScripts;
 
+    public static String repeatableDigest;
+
+    public static ChecksumAlgorithm checksumAlgorithm;
+
+    public static MigrationPlan migrationPlan;
+
+    public static boolean metricsEnabled;
+
     public void setRepeatableMigrations(List<Resource> repeatableMigrations) {
         ToolkitRecorder.repeatableMigrations = repeatableMigrations;
     }
 
+    public void setRepeatableDigest(String repeatableDigest) {
+        ToolkitRecorder.repeatableDigest = repeatableDigest;
+    }
+
+    public void setChecksumAlgorithm(ChecksumAlgorithm checksumAlgorithm) {
+        ToolkitRecorder.checksumAlgorithm = checksumAlgorithm;
+    }
+
+    public void setMetricsEnabled(boolean metricsEnabled) {
+        ToolkitRecorder.metricsEnabled = metricsEnabled;
+    }
+
     public void setAfterMigrationScripts(List<String> afterMigrationScripts) {
         ToolkitRecorder.afterMigrationScripts = afterMigrationScripts;
     }
@@ -47,6 +84,17 @@ public class ToolkitRecorder {
         ToolkitRecorder.versionedMigrations = versionedMigration;
     }
 
+    public void setBaselineMigrations(List<VersionedMigration> baselineMigrations) {
+        ToolkitRecorder.baselineMigrations = baselineMigrations;
+    }
+
+    /**
+     * Creates the migration plan of the recorded migrations.
+     */
+    public void createMigrationPlan() {
+        ToolkitRecorder.migrationPlan = MigrationPlan.of(versionedMigrations, repeatableMigrations, baselineMigrations);
+    }
+
     /**
      * Do start actions
      *
@@ -55,21 +103,52 @@ public class ToolkitRecorder {
     public void doStartActions(Class<? extends Pool> pool,ToolkitRuntimeConfig config, BeanContainer container) {
         try {
             Pool          client = container.instance(pool, Default.Literal.INSTANCE);
+            if (config.fastBootstrap) {
+                log.warn("Migration toolkit fast bootstrap mode, recently committed migrations may be lost on a server crash (synchronous_commit=off)");
+            } else if (config.fastBootstrapDeferIndexes) {
+                log.warn("Migration toolkit fast bootstrap mode is not enabled, the deferred indexes are ignored");
+            }
             ToolkitConfig toolkitConfig = ToolkitConfig.builder()
                     .table(config.historyTable)
+                    .groupCommitSize(config.groupCommitSize)
+                    .pipeliningLimit(config.pipeliningLimit)
+                    .cleanDropSchema(config.cleanDropSchema)
+                    .lockStrategy(config.lockStrategy)
+                    .lockMaxWait(config.lockMaxWait)
+                    .lockTimeout(config.lockTimeout.orElse(null))
+                    .statementTimeout(config.statementTimeout.orElse(null))
+                    .lockRetryDeadline(config.lockRetryDeadline)
+                    .fastBootstrap(config.fastBootstrap)
+                    .fastBootstrapDeferIndexes(config.fastBootstrapDeferIndexes)
+                    .testDataBatchSize(config.testDataBatchSize)
+                    .testDataParallelism(config.testDataParallelism)
                     .afterMigrationScripts(afterMigrationScripts)
-                    .versionedMigrations(versionedMigrations)
-                    .repeatableMigrations(repeatableMigrations)
+                    .migrationPlan(migrationPlan)
+                    .repeatableDigest(repeatableDigest)
+                    .checksumAlgorithm(checksumAlgorithm)
+                    .metrics(metricsEnabled ? MicrometerMigrationMetrics.create(config.historyTable) : null)
                     .build();
             Toolkit toolkit = new Toolkit(client, toolkitConfig);
+            Uni<?> actions = Uni.createFrom().voidItem();
             if (config.cleanAtStart) {
-                toolkit.clean();
+                actions = actions.chain(() -> toolkit.cleanAsync());
             }
             if (config.migrateAtStart) {
-                toolkit.migration();
+                if (config.tenantSchemas.isPresent() || config.tenantDiscoveryQuery.isPresent()) {
+                    actions = actions.chain(() -> tenantMigration(client, toolkitConfig, config));
+                } else {
+                    actions = actions.chain(() -> toolkit.migrationAsync());
+                }
             }
             if (config.testData) {
-                toolkit.testData();
+                actions = actions.chain(() -> toolkit.testDataAsync());
+            }
+            if (config.asyncStart) {
+                actions.subscribe().with(
+                        item -> log.info("Migration toolkit start actions finished"),
+                        ex -> log.error("Error execute migration toolkit start actions", ex));
+            } else {
+                actions.await().indefinitely();
             }
         }
         catch (Exception ex) {
@@ -77,4 +156,23 @@ public class ToolkitRecorder {
         }
     }
 
+    private static Uni<TenantMigrationResult> tenantMigration(Pool client, ToolkitConfig toolkitConfig, ToolkitRuntimeConfig config) {
+        int parallelism = config.tenantParallelism;
+        if (parallelism <= 0) {
+            parallelism = ConfigProvider.getConfig()
+                    .getOptionalValue(POOL_MAX_SIZE, Integer.class)
+                    .orElse(DEFAULT_POOL_MAX_SIZE);
+        }
+        TenantMigrationRunner runner = new TenantMigrationRunner(client, toolkitConfig, parallelism);
+        Uni<TenantMigrationResult> result = config.tenantSchemas.isPresent()
+                ? runner.migrationAsync(config.tenantSchemas.get())
+                : runner.migrationAsync(config.tenantDiscoveryQuery.get());
+        return result.invoke(r -> {
+            log.info("Tenant migration finished: {}", r);
+            if (!r.isSuccess()) {
+                throw new IllegalStateException("Error migrate the tenant schemas " + r.failures.keySet());
+            }
+        });
+    }
+
 }
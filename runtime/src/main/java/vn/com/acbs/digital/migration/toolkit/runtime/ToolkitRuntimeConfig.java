@@ -19,6 +19,11 @@ import io.quarkus.runtime.annotations.ConfigItem;
 import io.quarkus.runtime.annotations.ConfigPhase;
 import io.quarkus.runtime.annotations.ConfigRoot;
 import vn.com.acbs.digital.migration.toolkit.Toolkit;
+import vn.com.acbs.digital.migration.toolkit.database.StandardLockStrategy;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
 
 @ConfigRoot(name = "migration-toolkit", phase = ConfigPhase.RUN_TIME)
 public class ToolkitRuntimeConfig {
@@ -44,6 +49,13 @@ public class ToolkitRuntimeConfig {
     @ConfigItem
     public boolean cleanAtStart;
 
+    /**
+     * {@code true} to clean the database by dropping and recreating the schema when the current user owns it.
+     * The grants and default privileges of the schema are not recreated. Otherwise the objects of the schema are dropped.
+     */
+    @ConfigItem
+    public boolean cleanDropSchema;
+
     /**
      * {@code true} to execute scripts after migration, {@code false} otherwise.
      * This should be use only in development.
@@ -51,6 +63,110 @@ public class ToolkitRuntimeConfig {
     @ConfigItem
     public boolean testData;
 
+    /**
+     * {@code true} to run the start actions in the background, {@code false} to block the application start
+     * until they are finished. Errors of background start actions are only logged.
+     */
+    @ConfigItem
+    public boolean asyncStart;
+
+    /**
+     * Number of consecutive migration scripts executed with their history rows in one transaction.
+     * If a group fails the scripts of the group are executed again one per transaction. The scripts with
+     * the timeout directives or outside of the transaction are never grouped.
+     */
+    @ConfigItem(defaultValue = "1")
+    public int groupCommitSize;
+
+    /**
+     * Maximum number of script statements sent to the database before waiting for their results.
+     * {@code 0} sends the whole script as one query.
+     */
+    @ConfigItem(defaultValue = "256")
+    public int pipeliningLimit;
+
+    /**
+     * Number of records of the test data file ({@code .csv} or {@code .tsv}) inserted with one batch.
+     */
+    @ConfigItem(defaultValue = "1000")
+    public int testDataBatchSize;
+
+    /**
+     * Maximum number of consecutive test data files loaded concurrently, each on the own pool connection.
+     * Use it only for files of independent tables.
+     */
+    @ConfigItem(defaultValue = "1")
+    public int testDataParallelism;
+
+    /**
+     * Strategy to acquire the migration lock. {@code BLOCKING} waits for the lock on the server,
+     * {@code BACKOFF} tries to get the lock with the exponential backoff.
+     */
+    @ConfigItem(defaultValue = "BLOCKING")
+    public StandardLockStrategy lockStrategy;
+
+    /**
+     * Maximum time to wait for the migration lock held by the other instance. {@code 0} waits without limit.
+     */
+    @ConfigItem(defaultValue = "5M")
+    public Duration lockMaxWait;
+
+    /**
+     * Lock timeout of each migration script. The script waiting longer for the table lock fails instead of
+     * blocking the queries queued behind it. The script can override it with the {@code -- toolkit:lock-timeout} directive.
+     */
+    @ConfigItem(name = "script.lock-timeout")
+    public Optional<Duration> lockTimeout;
+
+    /**
+     * Statement timeout of each migration script. The script can override it with
+     * the {@code -- toolkit:statement-timeout} directive.
+     */
+    @ConfigItem(name = "script.statement-timeout")
+    public Optional<Duration> statementTimeout;
+
+    /**
+     * Time to retry the migration script which failed on the lock timeout, the delay between the attempts
+     * grows exponentially with the random jitter. {@code 0} fails without retry.
+     */
+    @ConfigItem(name = "script.lock-retry-deadline", defaultValue = "0S")
+    public Duration lockRetryDeadline;
+
+    /**
+     * {@code true} to run the clean, the migration and the test data with the session settings of the throwaway
+     * database, for example {@code synchronous_commit = off}. The committed changes can be lost on the server crash.
+     * Use it only for the test, preview and load test databases.
+     */
+    @ConfigItem(name = "fast-bootstrap.enabled")
+    public boolean fastBootstrap;
+
+    /**
+     * {@code true} to drop the indexes and the foreign key and check constraints of the table before the test data
+     * file is loaded and create them after the load in the same transaction. Only with the fast bootstrap mode.
+     */
+    @ConfigItem(name = "fast-bootstrap.defer-indexes")
+    public boolean fastBootstrapDeferIndexes;
+
+    /**
+     * Schemas of the tenants migrated at the start instead of the schema of the pool connection.
+     */
+    @ConfigItem(name = "tenants.schemas")
+    public Optional<List<String>> tenantSchemas;
+
+    /**
+     * Query which returns the schemas of the tenants in the first column. The schemas are migrated
+     * at the start instead of the schema of the pool connection.
+     */
+    @ConfigItem(name = "tenants.discovery-query")
+    public Optional<String> tenantDiscoveryQuery;
+
+    /**
+     * Maximum number of tenant schemas migrated concurrently, each on the own pool connection.
+     * {@code 0} uses the maximum size of the reactive pool.
+     */
+    @ConfigItem(name = "tenants.parallelism", defaultValue = "0")
+    public int tenantParallelism;
+
     /**
      * Migration table
      */
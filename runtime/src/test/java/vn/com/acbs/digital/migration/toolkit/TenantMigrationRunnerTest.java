@@ -0,0 +1,112 @@
+package vn.com.acbs.digital.migration.toolkit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import vn.com.acbs.digital.migration.toolkit.database.FakePool;
+import vn.com.acbs.digital.migration.toolkit.database.TestConfigs;
+import vn.com.acbs.digital.migration.toolkit.metrics.MicrometerMigrationMetrics;
+import vn.com.acbs.digital.migration.toolkit.models.TenantMigrationResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+public class TenantMigrationRunnerTest {
+
+    private static ToolkitConfig config(int count) {
+        return TestConfigs.builder(count).build();
+    }
+
+    private static List<String> tenants(int count) {
+        List<String> result = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            result.add("tenant_" + i);
+        }
+        return result;
+    }
+
+    @Test
+    public void schemasTest() {
+        FakePool fake = new FakePool(Toolkit.HISTORY_TABLE).latency(5);
+        TenantMigrationRunner runner = new TenantMigrationRunner(fake.pool(), config(3), 4);
+
+        TenantMigrationResult result = runner.migrationAsync(tenants(10)).await().atMost(TestConfigs.TIMEOUT);
+        Assertions.assertTrue(result.isSuccess(), result::toString);
+        Assertions.assertEquals(10, result.results.size());
+        for (String tenant : tenants(10)) {
+            Assertions.assertEquals("3", result.results.get(tenant).version);
+            Assertions.assertEquals(3, fake.historySize(tenant));
+        }
+        Assertions.assertEquals(0, fake.historySize());
+        Assertions.assertEquals(10, fake.count(FakePool.Kind.CONNECT));
+        Assertions.assertTrue(fake.maxInFlight() > 1 && fake.maxInFlight() <= 4, () -> "Max in flight: " + fake.maxInFlight());
+
+        // each schema has the own lock key and resets the search path
+        Set<String> locks = fake.trace().stream()
+                .filter(e -> e.sql != null && e.sql.startsWith("SET LOCAL lock_timeout"))
+                .map(e -> e.sql).collect(Collectors.toSet());
+        Assertions.assertEquals(10, locks.size());
+        Assertions.assertEquals(10, fake.trace().stream().filter(e -> "RESET search_path".equals(e.sql)).count());
+    }
+
+    @Test
+    public void publicSchemaTest() {
+        FakePool fake = new FakePool(Toolkit.HISTORY_TABLE);
+        TestConfigs.migrate(TestConfigs.toolkit(fake, TestConfigs.builder(2)));
+        TenantMigrationRunner runner = new TenantMigrationRunner(fake.pool(), config(3), 2);
+
+        TenantMigrationResult result = runner.migrationAsync(tenants(2)).await().atMost(TestConfigs.TIMEOUT);
+        Assertions.assertTrue(result.isSuccess(), result::toString);
+        Assertions.assertEquals(3, fake.historySize("tenant_1"));
+        Assertions.assertEquals(2, fake.historySize());
+
+        // the public schema stays in the search path and the tenant history table is qualified
+        Assertions.assertTrue(fake.trace().stream().anyMatch(e -> "SET search_path TO \"tenant_1\", public".equals(e.sql)));
+        Assertions.assertTrue(fake.trace().stream().anyMatch(e -> e.sql != null
+                && e.sql.startsWith("INSERT INTO \"tenant_2\"." + Toolkit.HISTORY_TABLE + " ")));
+    }
+
+    @Test
+    public void metricsTest() {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        FakePool fake = new FakePool(Toolkit.HISTORY_TABLE);
+        ToolkitConfig config = TestConfigs.builder(2)
+                .metrics(new MicrometerMigrationMetrics(registry, Toolkit.HISTORY_TABLE)).build();
+
+        new TenantMigrationRunner(fake.pool(), config, 2).migrationAsync(tenants(2)).await().atMost(TestConfigs.TIMEOUT);
+        for (String tenant : tenants(2)) {
+            Assertions.assertEquals(1, registry.get(MicrometerMigrationMetrics.PREFIX + "schema.version")
+                    .tags("schema", tenant, "version", "2").gauge().value());
+            Assertions.assertEquals(1, registry.get(MicrometerMigrationMetrics.PREFIX + "lock.wait")
+                    .tag("schema", tenant).timer().count());
+        }
+    }
+
+    @Test
+    public void failureTest() {
+        FakePool fake = new FakePool(Toolkit.HISTORY_TABLE)
+                .failOn(sql -> sql.startsWith("tenant_2:CREATE TABLE budget_test"));
+        TenantMigrationRunner runner = new TenantMigrationRunner(fake.pool(), config(1), 2);
+
+        TenantMigrationResult result = runner.migrationAsync(tenants(3)).await().atMost(TestConfigs.TIMEOUT);
+        Assertions.assertFalse(result.isSuccess());
+        Assertions.assertEquals(Set.of("tenant_2"), result.failures.keySet());
+        Assertions.assertEquals(Set.of("tenant_1", "tenant_3"), result.results.keySet());
+        Assertions.assertEquals(0, fake.historySize("tenant_2"));
+        Assertions.assertEquals(fake.count(FakePool.Kind.CONNECT), fake.count(FakePool.Kind.CLOSE));
+    }
+
+    @Test
+    public void discoveryQueryTest() {
+        String query = "SELECT nspname FROM pg_catalog.pg_namespace WHERE nspname LIKE 'tenant%'";
+        FakePool fake = new FakePool(Toolkit.HISTORY_TABLE).query(query, "tenant_a", "tenant_b");
+        TenantMigrationRunner runner = new TenantMigrationRunner(fake.pool(), config(2), 8);
+
+        TenantMigrationResult result = runner.migrationAsync(query).await().atMost(TestConfigs.TIMEOUT);
+        Assertions.assertEquals(Set.of("tenant_a", "tenant_b"), result.results.keySet());
+        Assertions.assertEquals(2, fake.historySize("tenant_b"));
+    }
+}
@@ -0,0 +1,101 @@
+package vn.com.acbs.digital.migration.toolkit.database;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import vn.com.acbs.digital.migration.toolkit.Toolkit;
+import vn.com.acbs.digital.migration.toolkit.models.MigrationResult;
+import vn.com.acbs.digital.migration.toolkit.models.Resource;
+import vn.com.acbs.digital.migration.toolkit.models.ResourceLoader;
+import vn.com.acbs.digital.migration.toolkit.models.VersionedMigration;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Baseline of the empty database measured with the fake pool.
+ */
+public class BaselineMigrationTest {
+
+    private static final String BASELINE = "db/budget/B3__baseline.sql";
+
+    private static Toolkit toolkit(FakePool fake, int count, boolean baseline) {
+        Resource resource = ResourceLoader.createFrom(BASELINE);
+        resource.checksum = 100L;
+        return TestConfigs.toolkit(fake, TestConfigs.builder(count)
+                .baselineMigrations(baseline ? List.of(new VersionedMigration(resource)) : null));
+    }
+
+    @Test
+    public void emptyDatabaseTest() {
+        FakePool fake = new FakePool(Toolkit.HISTORY_TABLE);
+        MigrationResult result = TestConfigs.migrate(toolkit(fake, 5, true));
+
+        Assertions.assertEquals("5", result.version);
+        Assertions.assertEquals(List.of(BASELINE, TestConfigs.SCRIPT, TestConfigs.SCRIPT), result.scripts);
+        Assertions.assertEquals(3, fake.statements().size(), () -> "Statements: " + fake.statements());
+        Assertions.assertTrue(fake.statements().get(0).startsWith("CREATE TABLE baseline_test"));
+        Assertions.assertEquals(6, fake.historySize());
+        // baseline with the covered history rows, then one transaction per script
+        Assertions.assertEquals(3, fake.count(FakePool.Kind.COMMIT));
+
+        fake.reset();
+        MigrationResult next = TestConfigs.migrate(toolkit(fake, 5, true));
+        Assertions.assertEquals("5", next.version);
+        Assertions.assertEquals(1, fake.roundTrips(), () -> "Trace: " + fake.trace());
+    }
+
+    @Test
+    public void baselineOnlyTest() {
+        FakePool fake = new FakePool(Toolkit.HISTORY_TABLE);
+        MigrationResult result = TestConfigs.migrate(toolkit(fake, 3, true));
+
+        Assertions.assertEquals("3", result.version);
+        Assertions.assertEquals(List.of(BASELINE), result.scripts);
+        Assertions.assertEquals(4, fake.historySize());
+        Assertions.assertEquals(1, fake.count(FakePool.Kind.COMMIT));
+    }
+
+    @Test
+    public void baselineHistoryTest() {
+        FakePool fake = new FakePool(Toolkit.HISTORY_TABLE);
+        TestConfigs.migrate(toolkit(fake, 3, true));
+
+        // the baseline row comes before the covered rows and keeps the version of the database
+        List<Object[]> history = fake.history();
+        Assertions.assertEquals(Arrays.asList(0L, "3", "SQL_BASELINE", BASELINE, 100L),
+                Arrays.asList(history.get(0)[0], history.get(0)[1], history.get(0)[3], history.get(0)[4], history.get(0)[5]));
+        Assertions.assertEquals(Arrays.asList("SQL", "SQL", "SQL"),
+                history.subList(1, 4).stream().map(r -> r[3]).collect(Collectors.toList()));
+        Assertions.assertEquals(0L, history.get(1)[6]);
+
+        fake.reset();
+        MigrationResult next = TestConfigs.migrate(toolkit(fake, 4, true));
+        Assertions.assertEquals("4", next.version);
+        Assertions.assertEquals(List.of(TestConfigs.SCRIPT), next.scripts);
+    }
+
+    @Test
+    public void existingDatabaseTest() {
+        FakePool fake = new FakePool(Toolkit.HISTORY_TABLE);
+        TestConfigs.migrate(toolkit(fake, 2, false));
+        fake.reset();
+
+        MigrationResult result = TestConfigs.migrate(toolkit(fake, 5, true));
+        Assertions.assertEquals("5", result.version);
+        Assertions.assertEquals(List.of(TestConfigs.SCRIPT, TestConfigs.SCRIPT, TestConfigs.SCRIPT), result.scripts);
+        Assertions.assertTrue(fake.statements().stream().noneMatch(s -> s.startsWith("CREATE TABLE baseline_test")));
+        Assertions.assertEquals(5, fake.historySize());
+    }
+
+    @Test
+    public void failedBaselineTest() {
+        FakePool fake = new FakePool(Toolkit.HISTORY_TABLE)
+                .failOn(sql -> sql.startsWith("CREATE TABLE baseline_test"));
+
+        Assertions.assertThrows(IllegalStateException.class, () -> TestConfigs.migrate(toolkit(fake, 5, true)));
+        Assertions.assertEquals(0, fake.historySize());
+        Assertions.assertEquals(1, fake.count(FakePool.Kind.ROLLBACK));
+        Assertions.assertEquals(0, fake.statements().size());
+    }
+}
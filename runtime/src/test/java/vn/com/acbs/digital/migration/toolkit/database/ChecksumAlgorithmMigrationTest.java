@@ -0,0 +1,60 @@
+package vn.com.acbs.digital.migration.toolkit.database;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import vn.com.acbs.digital.migration.toolkit.Toolkit;
+import vn.com.acbs.digital.migration.toolkit.models.ChecksumAlgorithm;
+import vn.com.acbs.digital.migration.toolkit.models.Resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * The checksum algorithm of the history rows measured with the fake pool.
+ */
+public class ChecksumAlgorithmMigrationTest {
+
+    private static final String SCRIPT = "db/test/stream.sql";
+
+    private static Resource repeatable(ChecksumAlgorithm algorithm) throws IOException {
+        Resource r = new Resource();
+        r.repeatable = true;
+        r.description = "stream";
+        r.script = SCRIPT;
+        try (InputStream in = ChecksumAlgorithmMigrationTest.class.getClassLoader().getResourceAsStream(SCRIPT)) {
+            r.checksum = algorithm.checksum(in.readAllBytes());
+        }
+        return r;
+    }
+
+    @Test
+    public void versionedTypeTest() {
+        FakePool fake = new FakePool(Toolkit.HISTORY_TABLE);
+        TestConfigs.migrate(TestConfigs.toolkit(fake, TestConfigs.builder(2).checksumAlgorithm(ChecksumAlgorithm.CRC32C)));
+
+        List<Object[]> history = fake.history();
+        Assertions.assertEquals(2, history.size());
+        history.forEach(row -> Assertions.assertEquals("SQL:CRC32C", row[3]));
+    }
+
+    @Test
+    public void restampTest() throws IOException {
+        FakePool fake = new FakePool(Toolkit.HISTORY_TABLE);
+        TestConfigs.migrate(TestConfigs.toolkit(fake, TestConfigs.builder(List.of())
+                .repeatableMigrations(List.of(repeatable(ChecksumAlgorithm.CRC32)))));
+        Assertions.assertEquals(3, fake.statements().size());
+        Assertions.assertEquals("SQL", fake.history().get(0)[3]);
+
+        // the unchanged script is compared with the CRC32 of the row and re-stamped without running it
+        fake.reset();
+        Resource resource = repeatable(ChecksumAlgorithm.CRC32C);
+        TestConfigs.migrate(TestConfigs.toolkit(fake, TestConfigs.builder(List.of())
+                .repeatableMigrations(List.of(resource))
+                .checksumAlgorithm(ChecksumAlgorithm.CRC32C)));
+        Assertions.assertEquals(0, fake.statements().size(), () -> "Statements: " + fake.statements());
+        Object[] row = fake.history().get(0);
+        Assertions.assertEquals("SQL:CRC32C", row[3]);
+        Assertions.assertEquals(resource.checksum, row[5]);
+    }
+}
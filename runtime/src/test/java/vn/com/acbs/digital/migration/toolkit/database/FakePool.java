@@ -0,0 +1,663 @@
+package vn.com.acbs.digital.migration.toolkit.database;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.pgclient.PgException;
+import io.vertx.pgclient.impl.RowImpl;
+import io.vertx.sqlclient.PropertyKind;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowIterator;
+import io.vertx.sqlclient.RowSet;
+import io.vertx.sqlclient.Tuple;
+import io.vertx.sqlclient.desc.ColumnDescriptor;
+import io.vertx.sqlclient.impl.RowDesc;
+import vn.com.acbs.digital.migration.toolkit.models.Resource;
+import vn.com.acbs.digital.migration.toolkit.models.ResourceLoader;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory stand-in of the PostgreSQL pool for measuring the engine without a database. The history,
+ * lock and catalog queries are answered from the simulated state, the other statements are recorded
+ * as executed. Every round trip is recorded in the trace and answered after the configured latency.
+ */
+public class FakePool {
+
+    public enum Kind {
+        CONNECT, QUERY, BATCH, BEGIN, COMMIT, ROLLBACK, CLOSE
+    }
+
+    /**
+     * One event of the trace.
+     */
+    public static class Event {
+
+        public final Kind kind;
+
+        public final long connection;
+
+        public final String sql;
+
+        public final int size;
+
+        Event(Kind kind, long connection, String sql, int size) {
+            this.kind = kind;
+            this.connection = connection;
+            this.sql = sql;
+            this.size = size;
+        }
+
+        public boolean isRoundTrip() {
+            return kind != Kind.CONNECT && kind != Kind.CLOSE;
+        }
+
+        @Override
+        public String toString() {
+            return kind + "#" + connection + (sql != null ? " " + sql.split("\n", 2)[0] : "") + (size > 1 ? " x" + size : "");
+        }
+    }
+
+    private static final String[] HISTORY_COLUMNS = {
+            "id", "version", "description", "type", "script", "checksum", "execution_time", "success", "installed_by", "installed_on"
+    };
+
+    private static final String PUBLIC = "public";
+
+    private static final String CREATE_INDEX_CONCURRENTLY = "CREATE INDEX CONCURRENTLY ";
+
+    private static final String DROP_INDEX_CONCURRENTLY = "DROP INDEX CONCURRENTLY IF EXISTS ";
+
+    private final String table;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "fake-pool");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final List<Event> trace = Collections.synchronizedList(new ArrayList<>());
+
+    private final AtomicLong connections = new AtomicLong();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    private long latency;
+
+    private Predicate<String> failure = sql -> false;
+
+    private Predicate<String> lockTimeout = sql -> false;
+
+    private int lockTimeouts;
+
+    private final List<String> settings = new ArrayList<>();
+
+    private final Map<String, Schema> schemas = new HashMap<>();
+
+    private final Map<Long, String> searchPaths = new HashMap<>();
+
+    private final Set<Long> transactions = new HashSet<>();
+
+    private final Map<String, List<String>> queries = new HashMap<>();
+
+    private long lockReleased;
+
+
+    private final List<String> statements = new ArrayList<>();
+
+    private final Map<String, List<String>> tables = new HashMap<>();
+
+    private final Map<String, List<Object[]>> deferrable = new HashMap<>();
+
+    public FakePool(String table) {
+        this.table = table;
+    }
+
+    /**
+     * Sets the latency of each round trip.
+     *
+     * @param millis the latency in milliseconds
+     * @return this pool
+     */
+    public FakePool latency(long millis) {
+        this.latency = millis;
+        return this;
+    }
+
+    /**
+     * Fails the statements matching the predicate with the syntax error. The predicate is tested
+     * with the statement and with the statement prefixed by the schema of the search path, for
+     * example {@code tenant:CREATE TABLE}.
+     *
+     * @param failure the predicate of the failing statements
+     * @return this pool
+     */
+    public FakePool failOn(Predicate<String> failure) {
+        this.failure = failure;
+        return this;
+    }
+
+    /**
+     * Fails the statements matching the predicate with the lock timeout the number of times.
+     *
+     * @param lockTimeout the predicate of the statements waiting for the lock
+     * @param times       the number of the lock timeouts
+     * @return this pool
+     */
+    public synchronized FakePool lockTimeoutOn(Predicate<String> lockTimeout, int times) {
+        this.lockTimeout = lockTimeout;
+        this.lockTimeouts = times;
+        return this;
+    }
+
+    /**
+     * Answers the query with the rows of one text column.
+     *
+     * @param sql    the query
+     * @param values the values of the rows
+     * @return this pool
+     */
+    public FakePool query(String sql, String... values) {
+        queries.put(sql, Arrays.asList(values));
+        return this;
+    }
+
+    /**
+     * Holds the advisory lock by the other session for the time.
+     *
+     * @param millis the time in milliseconds
+     * @return this pool
+     */
+    public synchronized FakePool lockHeld(long millis) {
+        this.lockReleased = System.currentTimeMillis() + millis;
+        return this;
+    }
+
+    /**
+     * Adds the table with the text columns for the data loads.
+     *
+     * @param name    the table
+     * @param columns the columns
+     * @return this pool
+     */
+    public FakePool table(String name, String... columns) {
+        tables.put(name, Arrays.asList(columns));
+        return this;
+    }
+
+    /**
+     * Adds the index or the constraint of the table which can be created after the data load.
+     *
+     * @param table  the table
+     * @param drop   the drop statement
+     * @param create the create statement
+     * @return this pool
+     */
+    public FakePool deferrable(String table, String drop, String create) {
+        deferrable.computeIfAbsent(table, x -> new ArrayList<>()).add(new Object[]{drop, create});
+        return this;
+    }
+
+    public io.vertx.mutiny.pgclient.PgPool pool() {
+        return new io.vertx.mutiny.pgclient.PgPool(proxy(io.vertx.pgclient.PgPool.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getConnection":
+                    long id = connections.incrementAndGet();
+                    trace.add(new Event(Kind.CONNECT, id, null, 0));
+                    return reply(proxy, method, args, connection(id), false);
+                case "close":
+                    return reply(proxy, method, args, null, false);
+                default:
+                    throw new UnsupportedOperationException("Pool." + method.getName());
+            }
+        }));
+    }
+
+    private io.vertx.sqlclient.SqlConnection connection(long id) {
+        return proxy(io.vertx.sqlclient.SqlConnection.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "query":
+                    String sql = (String) args[0];
+                    return proxy(io.vertx.sqlclient.Query.class, (q, m, a) -> {
+                        if (!"execute".equals(m.getName())) {
+                            throw new UnsupportedOperationException("Query." + m.getName());
+                        }
+                        return roundTrip(q, m, a, new Event(Kind.QUERY, id, sql, 1), null);
+                    });
+                case "preparedQuery":
+                    String prepared = (String) args[0];
+                    return proxy(io.vertx.sqlclient.PreparedQuery.class, (q, m, a) -> {
+                        if ("execute".equals(m.getName())) {
+                            return roundTrip(q, m, a, new Event(Kind.QUERY, id, prepared, 1), List.of((Tuple) a[0]));
+                        }
+                        if ("executeBatch".equals(m.getName())) {
+                            @SuppressWarnings("unchecked")
+                            List<Tuple> batch = (List<Tuple>) a[0];
+                            return roundTrip(q, m, a, new Event(Kind.BATCH, id, prepared, batch.size()), batch);
+                        }
+                        throw new UnsupportedOperationException("PreparedQuery." + m.getName());
+                    });
+                case "begin":
+                    return roundTrip(proxy, method, args, new Event(Kind.BEGIN, id, null, 0), null);
+                case "close":
+                    trace.add(new Event(Kind.CLOSE, id, null, 0));
+                    return reply(proxy, method, args, null, false);
+                case "exceptionHandler":
+                case "closeHandler":
+                    return proxy;
+                default:
+                    throw new UnsupportedOperationException("SqlConnection." + method.getName());
+            }
+        });
+    }
+
+    private io.vertx.sqlclient.Transaction transaction(long id) {
+        return proxy(io.vertx.sqlclient.Transaction.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "commit":
+                    return roundTrip(proxy, method, args, new Event(Kind.COMMIT, id, null, 0), null);
+                case "rollback":
+                    return roundTrip(proxy, method, args, new Event(Kind.ROLLBACK, id, null, 0), null);
+                case "completion":
+                    return reply(proxy, method, args, null, false);
+                default:
+                    throw new UnsupportedOperationException("Transaction." + method.getName());
+            }
+        });
+    }
+
+    private Object roundTrip(Object proxy, Method method, Object[] args, Event event, List<Tuple> arguments) {
+        trace.add(event);
+        Object result;
+        try {
+            switch (event.kind) {
+                case BEGIN:
+                    transaction(event.connection, true);
+                    result = transaction(event.connection);
+                    break;
+                case COMMIT:
+                case ROLLBACK:
+                    transaction(event.connection, false);
+                    result = null;
+                    break;
+                case QUERY:
+                case BATCH:
+                    result = execute(event.connection, event.sql, arguments);
+                    break;
+                default:
+                    result = null;
+            }
+        } catch (RuntimeException ex) {
+            result = ex;
+        }
+        return reply(proxy, method, args, result, true);
+    }
+
+    /**
+     * Completes the call after the latency, the result is computed when the call is sent
+     * in the same order the server would execute the calls.
+     */
+    private Object reply(Object proxy, Method method, Object[] args, Object result, boolean roundTrip) {
+        Promise<Object> promise = Promise.promise();
+        Runnable complete = () -> {
+            if (roundTrip) {
+                inFlight.decrementAndGet();
+            }
+            if (result instanceof Throwable) {
+                promise.fail((Throwable) result);
+            } else {
+                promise.complete(result);
+            }
+        };
+        if (roundTrip) {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        }
+        if (roundTrip && latency > 0) {
+            scheduler.schedule(complete, latency, TimeUnit.MILLISECONDS);
+        } else {
+            complete.run();
+        }
+        if (args != null && args.length > 0 && args[args.length - 1] instanceof Handler) {
+            @SuppressWarnings("unchecked")
+            Handler<AsyncResult<Object>> handler = (Handler<AsyncResult<Object>>) args[args.length - 1];
+            promise.future().onComplete(handler);
+            return method.getReturnType() == void.class ? null : proxy;
+        }
+        return promise.future();
+    }
+
+    private synchronized void transaction(long connection, boolean open) {
+        if (open) {
+            transactions.add(connection);
+        } else {
+            transactions.remove(connection);
+        }
+    }
+
+    private synchronized RowSet<Row> execute(long connection, String sql, List<Tuple> arguments) {
+        String schemaName = searchPaths.getOrDefault(connection, PUBLIC);
+        // the tenant history table is qualified with the schema
+        String value = sql.trim().replace("\"" + schemaName + "\".", "");
+        Schema schema = schemas.computeIfAbsent(schemaName, x -> new Schema());
+        if (value.contains(" CONCURRENTLY ") && transactions.contains(connection)) {
+            throw new PgException(value.split(" CONCURRENTLY", 2)[0] + " CONCURRENTLY cannot run inside a transaction block", "ERROR", "25001", null);
+        }
+        if (failure.test(value) || failure.test(schemaName + ":" + value)) {
+            if (value.startsWith(CREATE_INDEX_CONCURRENTLY)) {
+                // the failed concurrent build leaves the invalid index
+                schema.invalidIndexes.add(schemaName + "." + value.substring(CREATE_INDEX_CONCURRENTLY.length()).split(" ", 2)[0]);
+            }
+            throw new PgException("syntax error", "ERROR", "42601", null);
+        }
+        if (lockTimeouts > 0 && lockTimeout.test(value)) {
+            lockTimeouts--;
+            throw new PgException("canceling statement due to lock timeout", "ERROR", "55P03", null);
+        }
+        if (value.matches("(?s)(SET (LOCAL )?|RESET )(lock_timeout|statement_timeout|synchronous_commit)\\b(?!.*pg_advisory_lock).*")) {
+            settings.add(value);
+            return empty();
+        }
+        if (value.startsWith("SET search_path TO ")) {
+            searchPaths.put(connection, value.substring(19).split(",")[0].trim().replace("\"", ""));
+            return empty();
+        }
+        if (value.equals("RESET search_path")) {
+            searchPaths.remove(connection);
+            return empty();
+        }
+        if (queries.containsKey(value)) {
+            return rows(List.of("value"), queries.get(value).stream().map(v -> new Object[]{v}).collect(Collectors.toList()));
+        }
+        if (value.startsWith("SELECT CURRENT_USER AS installed_by")) {
+            if (!schema.historyExists) {
+                throw new PgException("relation \"" + table + "\" does not exist", "ERROR", "42P01", null);
+            }
+            return rows(List.of("installed_by", "last_id", "version", "repeatable_digest"),
+                    Collections.singletonList(new Object[]{"toolkit", schema.history.isEmpty() ? null : schema.history.lastKey(), schema.lastVersion(), schema.repeatableDigest(descriptions(arguments))}));
+        }
+        if (value.startsWith("SELECT pg_try_advisory_lock")) {
+            boolean locked = System.currentTimeMillis() >= lockReleased;
+            return rows(List.of("pg_try_advisory_lock"), Collections.singletonList(new Object[]{locked}));
+        }
+        if (value.startsWith("SET LOCAL lock_timeout = ")) {
+            // the server waits for the lock, the fake answers at once
+            long timeout = Long.parseLong(value.substring(25, value.indexOf(';')));
+            if (timeout > 0 && lockReleased - System.currentTimeMillis() > timeout) {
+                throw new PgException("canceling statement due to lock timeout", "ERROR", "55P03", null);
+            }
+            return rows(List.of("pg_advisory_lock"), Collections.singletonList(new Object[]{""}));
+        }
+        if (value.contains("NOT i.indisvalid")) {
+            return rows(List.of("format"), schema.invalidIndexes.stream().map(i -> new Object[]{i}).collect(Collectors.toList()));
+        }
+        if (value.startsWith(DROP_INDEX_CONCURRENTLY)) {
+            schema.invalidIndexes.remove(value.substring(DROP_INDEX_CONCURRENTLY.length()));
+        }
+        if (value.startsWith("SELECT pg_advisory_unlock")) {
+            return rows(List.of("pg_advisory_unlock"), Collections.singletonList(new Object[]{true}));
+        }
+        if (value.equals("SELECT CURRENT_USER")) {
+            return rows(List.of("current_user"), Collections.singletonList(new Object[]{"toolkit"}));
+        }
+        if (value.startsWith("CREATE TABLE " + table + " ")) {
+            schema.historyExists = true;
+            return empty();
+        }
+        if (value.startsWith("INSERT INTO " + table + " ")) {
+            for (Tuple t : arguments) {
+                Object[] row = new Object[HISTORY_COLUMNS.length];
+                for (int i = 0; i < 9; i++) {
+                    row[i] = t.getValue(i);
+                }
+                schema.history.put((Long) row[0], row);
+            }
+            return empty();
+        }
+        if (value.startsWith("SELECT id, description, type, script, checksum, execution_time, installed_by FROM " + table)) {
+            return rows(List.of("id", "description", "type", "script", "checksum", "execution_time", "installed_by"),
+                    schema.history.values().stream()
+                            .filter(r -> r[1] == null && descriptions(arguments).contains((String) r[2]))
+                            .map(r -> new Object[]{r[0], r[2], r[3], r[4], r[5], r[6], r[8]})
+                            .collect(Collectors.toList()));
+        }
+        if (value.startsWith("SELECT * FROM " + table + " WHERE version IS NOT NULL")) {
+            return rows(Arrays.asList(HISTORY_COLUMNS), schema.history.descendingMap().values().stream()
+                    .filter(r -> r[1] != null).limit(1).collect(Collectors.toList()));
+        }
+        if (value.startsWith("CREATE OR REPLACE FUNCTION pg_temp.toolkit_clean()")) {
+            List<Object[]> drops = new ArrayList<>();
+            if (schema.historyExists) {
+                drops.add(new Object[]{"DROP TABLE IF EXISTS public." + table + " CASCADE", 1000L});
+            }
+            schema.historyExists = false;
+            schema.history.clear();
+            statements.clear();
+            return rows(List.of("drop_statement", "drop_time"), drops);
+        }
+        if (value.contains("pg_get_indexdef")) {
+            return rows(List.of("drop", "create"),
+                    deferrable.getOrDefault((String) arguments.get(0).getValue(0), Collections.emptyList()));
+        }
+        if (value.contains("FROM pg_catalog.pg_attribute")) {
+            List<String> columns = tables.getOrDefault((String) arguments.get(0).getValue(0), Collections.emptyList());
+            return rows(List.of("attname", "format_type"),
+                    columns.stream().map(c -> new Object[]{c, "text"}).collect(Collectors.toList()));
+        }
+        statements.add(value);
+        return empty();
+    }
+
+    private static RowSet<Row> empty() {
+        return rows(Collections.emptyList(), Collections.emptyList());
+    }
+
+    private static RowSet<Row> rows(List<String> columns, List<Object[]> values) {
+        RowDesc desc = new RowDesc(columns);
+        List<Row> rows = new ArrayList<>(values.size());
+        for (Object[] value : values) {
+            RowImpl row = new RowImpl(desc);
+            for (int i = 0; i < columns.size(); i++) {
+                row.addValue(value[i]);
+            }
+            rows.add(row);
+        }
+        return new FakeRowSet(columns, rows);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(FakePool.class.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                switch (method.getName()) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        return type.getSimpleName() + "@fake";
+                }
+            }
+            if (method.isDefault()) {
+                return java.lang.invoke.MethodHandles.privateLookupIn(type, java.lang.invoke.MethodHandles.lookup())
+                        .unreflectSpecial(method, type).bindTo(proxy).invokeWithArguments(args);
+            }
+            return handler.invoke(proxy, method, args);
+        });
+    }
+
+    public List<Event> trace() {
+        synchronized (trace) {
+            return new ArrayList<>(trace);
+        }
+    }
+
+    public long roundTrips() {
+        return trace().stream().filter(Event::isRoundTrip).count();
+    }
+
+    public long count(Kind kind) {
+        return trace().stream().filter(e -> e.kind == kind).count();
+    }
+
+    public int maxInFlight() {
+        return maxInFlight.get();
+    }
+
+    public synchronized List<String> statements() {
+        return new ArrayList<>(statements);
+    }
+
+    public synchronized int historySize() {
+        return historySize(PUBLIC);
+    }
+
+    public synchronized int historySize(String schema) {
+        Schema state = schemas.get(schema);
+        return state != null ? state.history.size() : 0;
+    }
+
+    /**
+     * Gets the history rows of the public schema in the order of the id.
+     *
+     * @return the rows with the columns of the history table
+     */
+    public synchronized List<Object[]> history() {
+        Schema state = schemas.get(PUBLIC);
+        return state != null ? new ArrayList<>(state.history.values()) : Collections.emptyList();
+    }
+
+    /**
+     * Gets the timeout settings of the sessions.
+     *
+     * @return the setting statements
+     */
+    public synchronized List<String> settings() {
+        return new ArrayList<>(settings);
+    }
+
+    public synchronized Set<String> invalidIndexes() {
+        Schema state = schemas.get(PUBLIC);
+        return state != null ? new TreeSet<>(state.invalidIndexes) : Collections.emptySet();
+    }
+
+    /**
+     * Clears the trace, the simulated database state is kept.
+     */
+    public void reset() {
+        trace.clear();
+        maxInFlight.set(0);
+        synchronized (this) {
+            statements.clear();
+            settings.clear();
+        }
+    }
+
+    /**
+     * Gets the descriptions bound to {@code description = ANY($1)}.
+     */
+    private static Set<String> descriptions(List<Tuple> arguments) {
+        return new HashSet<>(Arrays.asList((String[]) arguments.get(0).getValue(0)));
+    }
+
+    /**
+     * The simulated state of one schema.
+     */
+    private static class Schema {
+
+        private boolean historyExists;
+
+        private final TreeMap<Long, Object[]> history = new TreeMap<>();
+
+        private final Set<String> invalidIndexes = new TreeSet<>();
+
+        private String lastVersion() {
+            return history.descendingMap().values().stream()
+                    .filter(r -> r[1] != null).map(r -> (String) r[1]).findFirst().orElse(null);
+        }
+
+        private String repeatableDigest(Set<String> descriptions) {
+            List<Resource> resources = history.values().stream().filter(r -> r[1] == null && descriptions.contains((String) r[2])).map(r -> {
+                Resource resource = new Resource();
+                resource.description = (String) r[2];
+                resource.checksum = (Long) r[5];
+                return resource;
+            }).collect(Collectors.toList());
+            return ResourceLoader.repeatableDigest(resources);
+        }
+    }
+
+    private static class FakeRowSet implements RowSet<Row> {
+
+        private final List<String> columns;
+
+        private final List<Row> rows;
+
+        FakeRowSet(List<String> columns, List<Row> rows) {
+            this.columns = columns;
+            this.rows = rows;
+        }
+
+        @Override
+        public RowIterator<Row> iterator() {
+            Iterator<Row> it = rows.iterator();
+            return new RowIterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                @Override
+                public Row next() {
+                    return it.next();
+                }
+            };
+        }
+
+        @Override
+        public int rowCount() {
+            return rows.size();
+        }
+
+        @Override
+        public List<String> columnsNames() {
+            return columns;
+        }
+
+        @Override
+        public List<ColumnDescriptor> columnDescriptors() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public int size() {
+            return rows.size();
+        }
+
+        @Override
+        public <V> V property(PropertyKind<V> propertyKind) {
+            return null;
+        }
+
+        @Override
+        public RowSet<Row> value() {
+            return this;
+        }
+
+        @Override
+        public RowSet<Row> next() {
+            return null;
+        }
+    }
+}
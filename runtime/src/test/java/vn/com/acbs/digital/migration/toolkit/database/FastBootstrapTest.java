@@ -0,0 +1,72 @@
+package vn.com.acbs.digital.migration.toolkit.database;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import vn.com.acbs.digital.migration.toolkit.Toolkit;
+
+import java.util.List;
+
+/**
+ * Fast bootstrap mode of the throwaway databases measured with the fake pool.
+ */
+public class FastBootstrapTest {
+
+    private static final String DATA = "db/budget/public.budget.csv";
+
+    private static final String SET = "SET synchronous_commit = off";
+
+    private static final String RESET = "RESET synchronous_commit";
+
+    private static FakePool fake() {
+        return new FakePool(Toolkit.HISTORY_TABLE)
+                .table("public.budget", "id", "name")
+                .deferrable("public.budget", "DROP INDEX budget_name_idx", "CREATE INDEX budget_name_idx ON public.budget USING btree (name)")
+                .deferrable("public.budget", "ALTER TABLE budget DROP CONSTRAINT budget_fk",
+                        "ALTER TABLE budget ADD CONSTRAINT budget_fk FOREIGN KEY (id) REFERENCES owner(id)");
+    }
+
+    private static Toolkit toolkit(FakePool fake, boolean enabled, boolean deferIndexes) {
+        return TestConfigs.toolkit(fake, TestConfigs.builder(1)
+                .afterMigrationScripts(List.of(DATA))
+                .fastBootstrap(enabled)
+                .fastBootstrapDeferIndexes(deferIndexes));
+    }
+
+    @Test
+    public void sessionSettingsTest() {
+        FakePool fake = fake();
+        Toolkit toolkit = toolkit(fake, true, false);
+        toolkit.cleanAsync().await().atMost(TestConfigs.TIMEOUT);
+        TestConfigs.migrate(toolkit);
+        toolkit.testDataAsync().await().atMost(TestConfigs.TIMEOUT);
+
+        Assertions.assertEquals(List.of(SET, RESET, SET, RESET, SET, RESET), fake.settings());
+        Assertions.assertTrue(fake.statements().stream().noneMatch(s -> s.startsWith("DROP")), () -> "Statements: " + fake.statements());
+    }
+
+    @Test
+    public void deferIndexesTest() {
+        FakePool fake = fake();
+        toolkit(fake, true, true).testDataAsync().await().atMost(TestConfigs.TIMEOUT);
+
+        List<String> statements = fake.statements();
+        Assertions.assertEquals("DROP INDEX budget_name_idx;\nALTER TABLE budget DROP CONSTRAINT budget_fk", statements.get(0));
+        Assertions.assertTrue(statements.get(1).startsWith("INSERT INTO public.budget"), statements::toString);
+        Assertions.assertEquals("CREATE INDEX budget_name_idx ON public.budget USING btree (name);\n"
+                + "ALTER TABLE budget ADD CONSTRAINT budget_fk FOREIGN KEY (id) REFERENCES owner(id)", statements.get(statements.size() - 1));
+        // drop, load and create in one transaction
+        Assertions.assertEquals(1, fake.count(FakePool.Kind.COMMIT), () -> "Trace: " + fake.trace());
+    }
+
+    @Test
+    public void disabledTest() {
+        FakePool fake = fake();
+        // the deferred indexes need the enabled mode
+        Toolkit toolkit = toolkit(fake, false, true);
+        TestConfigs.migrate(toolkit);
+        toolkit.testDataAsync().await().atMost(TestConfigs.TIMEOUT);
+
+        Assertions.assertTrue(fake.settings().isEmpty(), () -> "Settings: " + fake.settings());
+        Assertions.assertTrue(fake.statements().stream().noneMatch(s -> s.startsWith("DROP")), () -> "Statements: " + fake.statements());
+    }
+}
@@ -0,0 +1,98 @@
+package vn.com.acbs.digital.migration.toolkit.database;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import vn.com.acbs.digital.migration.toolkit.Toolkit;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class FlightRecorderEventsTest {
+
+    private static final String PREFIX = "vn.com.acbs.migration.toolkit.";
+
+    private static List<RecordedEvent> events(List<RecordedEvent> events, String name) {
+        // the events are written in the buffers of the threads
+        return events.stream().filter(e -> e.getEventType().getName().equals(PREFIX + name))
+                .sorted(Comparator.comparing(RecordedEvent::getStartTime))
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void eventsTest() throws Exception {
+        FakePool fake = new FakePool(Toolkit.HISTORY_TABLE).table("public.budget", "id", "name");
+        Toolkit toolkit = TestConfigs.toolkit(fake, TestConfigs.builder(2)
+                .afterMigrationScripts(List.of("db/test/stream.sql", "db/budget/public.budget.csv")));
+
+        Path file = Files.createTempFile("migration-toolkit", ".jfr");
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            for (String name : List.of("MigrationLockAcquire", "MigrationScriptExecute", "HistoryWrite",
+                    "SchemaCleanObjectDrop", "TestDataScriptExecute")) {
+                recording.enable(PREFIX + name);
+            }
+            recording.start();
+            TestConfigs.migrate(toolkit);
+            toolkit.testDataAsync().await().atMost(TestConfigs.TIMEOUT);
+            toolkit.cleanAsync().await().atMost(TestConfigs.TIMEOUT);
+            recording.stop();
+            recording.dump(file);
+            events = RecordingFile.readAllEvents(file);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+
+        List<RecordedEvent> lock = events(events, "MigrationLockAcquire");
+        Assertions.assertEquals(1, lock.size());
+        Assertions.assertTrue(lock.get(0).getBoolean("acquired"));
+        Assertions.assertEquals(1, lock.get(0).getInt("attempts"));
+        Assertions.assertEquals(Toolkit.HISTORY_TABLE, lock.get(0).getString("table"));
+
+        List<RecordedEvent> scripts = events(events, "MigrationScriptExecute");
+        Assertions.assertEquals(2, scripts.size());
+        RecordedEvent script = scripts.get(1);
+        Assertions.assertEquals("db/budget/V1__budget.sql", script.getString("script"));
+        Assertions.assertEquals("2", script.getString("version"));
+        Assertions.assertEquals(2L, script.getLong("checksum"));
+        Assertions.assertTrue(script.getLong("bytes") > 0);
+        Assertions.assertTrue(script.getLong("statements") > 0);
+        Assertions.assertTrue(script.getBoolean("success"));
+        Assertions.assertTrue(script.getLong("serverTime") >= 0);
+
+        Assertions.assertEquals(2, events(events, "HistoryWrite").size());
+
+        List<RecordedEvent> testData = events(events, "TestDataScriptExecute");
+        Assertions.assertEquals(2, testData.size());
+        Assertions.assertEquals(3, testData.get(0).getLong("statements"));
+        Assertions.assertEquals("db/budget/public.budget.csv", testData.get(1).getString("script"));
+        Assertions.assertEquals(10, testData.get(1).getLong("statements"));
+
+        List<RecordedEvent> drops = events(events, "SchemaCleanObjectDrop");
+        Assertions.assertEquals(1, drops.size());
+        Assertions.assertEquals(1000L, drops.get(0).getLong("serverTime"));
+        Assertions.assertEquals(1, cleanQueries(fake));
+    }
+
+    @Test
+    public void cleanWithoutRecordingTest() {
+        FakePool fake = new FakePool(Toolkit.HISTORY_TABLE);
+        Toolkit toolkit = TestConfigs.toolkit(fake, TestConfigs.builder(2));
+        TestConfigs.migrate(toolkit);
+
+        toolkit.cleanAsync().await().atMost(TestConfigs.TIMEOUT);
+        // the recording does not change the statement sent to the server
+        Assertions.assertEquals(1, cleanQueries(fake));
+        Assertions.assertEquals(0, fake.historySize());
+    }
+
+    private static long cleanQueries(FakePool fake) {
+        String clean = PostgresDatabase.cleanSchemaSql(false);
+        return fake.trace().stream().filter(e -> clean.equals(e.sql)).count();
+    }
+}
@@ -0,0 +1,74 @@
+package vn.com.acbs.digital.migration.toolkit.database;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import vn.com.acbs.digital.migration.toolkit.Toolkit;
+import vn.com.acbs.digital.migration.toolkit.models.MigrationResult;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Group commit of the consecutive migrations measured with the fake pool.
+ */
+public class GroupCommitTest {
+
+    @Test
+    public void oneTransactionTest() {
+        FakePool fake = new FakePool(Toolkit.HISTORY_TABLE);
+        MigrationResult result = TestConfigs.migrate(TestConfigs.toolkit(fake, TestConfigs.builder(5).groupCommitSize(5)));
+
+        Assertions.assertEquals("5", result.version);
+        Assertions.assertEquals(5, result.scripts.size());
+        Assertions.assertEquals(5, fake.historySize());
+        Assertions.assertEquals(1, fake.count(FakePool.Kind.BEGIN), () -> "Trace: " + fake.trace());
+        Assertions.assertEquals(1, fake.count(FakePool.Kind.COMMIT));
+    }
+
+    @Test
+    public void groupSizeTest() {
+        FakePool fake = new FakePool(Toolkit.HISTORY_TABLE);
+        TestConfigs.migrate(TestConfigs.toolkit(fake, TestConfigs.builder(7).groupCommitSize(3)));
+
+        // 3 + 3 + 1
+        Assertions.assertEquals(7, fake.historySize());
+        Assertions.assertEquals(3, fake.count(FakePool.Kind.BEGIN), () -> "Trace: " + fake.trace());
+        Assertions.assertEquals(3, fake.count(FakePool.Kind.COMMIT));
+    }
+
+    @Test
+    public void historyUpsertTest() {
+        FakePool fake = new FakePool(Toolkit.HISTORY_TABLE);
+        TestConfigs.migrate(TestConfigs.toolkit(fake, TestConfigs.builder(4).groupCommitSize(4)));
+
+        // the history rows of the group are one batch of the upsert
+        List<FakePool.Event> batches = fake.trace().stream()
+                .filter(e -> e.kind == FakePool.Kind.BATCH)
+                .collect(Collectors.toList());
+        Assertions.assertEquals(1, batches.size(), () -> "Trace: " + fake.trace());
+        Assertions.assertEquals(4, batches.get(0).size);
+        Assertions.assertTrue(batches.get(0).sql.startsWith("INSERT INTO " + Toolkit.HISTORY_TABLE + " "), batches.get(0).sql);
+        Assertions.assertTrue(batches.get(0).sql.contains(" ON CONFLICT (id) DO UPDATE "), batches.get(0).sql);
+        Assertions.assertEquals(4, fake.historySize());
+    }
+
+    @Test
+    public void failedScriptTest() {
+        AtomicInteger scripts = new AtomicInteger();
+        // only the first execution of the third script fails
+        FakePool fake = new FakePool(Toolkit.HISTORY_TABLE)
+                .failOn(sql -> sql.startsWith("CREATE TABLE budget_test") && scripts.incrementAndGet() == 3);
+        MigrationResult result = TestConfigs.migrate(TestConfigs.toolkit(fake, TestConfigs.builder(5).groupCommitSize(5)));
+
+        // the group is rolled back without the history rows, then the scripts run one per transaction
+        List<FakePool.Event> trace = fake.trace();
+        List<FakePool.Event> group = trace.subList(0, trace.indexOf(trace.stream()
+                .filter(e -> e.kind == FakePool.Kind.ROLLBACK).findFirst().orElseThrow()));
+        Assertions.assertTrue(group.stream().noneMatch(e -> e.kind == FakePool.Kind.BATCH), () -> "Trace: " + trace);
+        Assertions.assertEquals(1, fake.count(FakePool.Kind.ROLLBACK));
+        Assertions.assertEquals(5, fake.count(FakePool.Kind.COMMIT));
+        Assertions.assertEquals("5", result.version);
+        Assertions.assertEquals(5, fake.historySize());
+    }
+}
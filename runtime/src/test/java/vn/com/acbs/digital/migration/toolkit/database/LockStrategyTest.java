@@ -0,0 +1,68 @@
+package vn.com.acbs.digital.migration.toolkit.database;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import vn.com.acbs.digital.migration.toolkit.Toolkit;
+import vn.com.acbs.digital.migration.toolkit.models.MigrationResult;
+
+import java.time.Duration;
+
+public class LockStrategyTest {
+
+    private static Toolkit toolkit(FakePool fake, LockStrategy strategy, Duration maxWait) {
+        return TestConfigs.toolkit(fake, TestConfigs.builder(1)
+                .lockStrategy(strategy)
+                .lockMaxWait(maxWait));
+    }
+
+    private static long count(FakePool fake, String sql) {
+        return fake.trace().stream().filter(e -> e.sql != null && e.sql.startsWith(sql)).count();
+    }
+
+    @Test
+    public void blockingTest() {
+        FakePool fake = new FakePool(Toolkit.HISTORY_TABLE).lockHeld(1000);
+        MigrationResult result = TestConfigs.migrate(toolkit(fake, StandardLockStrategy.BLOCKING, Duration.ofSeconds(5)));
+        Assertions.assertEquals("1", result.version);
+        Assertions.assertEquals(1, count(fake, "SET LOCAL lock_timeout = 5000;"));
+        Assertions.assertEquals(0, count(fake, "SELECT pg_try_advisory_lock"));
+    }
+
+    @Test
+    public void blockingTimeoutTest() {
+        FakePool fake = new FakePool(Toolkit.HISTORY_TABLE).lockHeld(60_000);
+        Toolkit toolkit = toolkit(fake, StandardLockStrategy.BLOCKING, Duration.ofSeconds(1));
+        IllegalStateException ex = Assertions.assertThrows(IllegalStateException.class,
+                () -> TestConfigs.migrate(toolkit));
+        Assertions.assertTrue(ex.getMessage().contains("migration lock"), ex.getMessage());
+        Assertions.assertEquals(0, fake.historySize());
+        Assertions.assertEquals(fake.count(FakePool.Kind.CONNECT), fake.count(FakePool.Kind.CLOSE));
+    }
+
+    @Test
+    public void blockingWithoutLimitTest() {
+        FakePool fake = new FakePool(Toolkit.HISTORY_TABLE).lockHeld(60_000);
+        TestConfigs.migrate(toolkit(fake, StandardLockStrategy.BLOCKING, Duration.ZERO));
+        Assertions.assertEquals(1, count(fake, "SET LOCAL lock_timeout = 0;"));
+    }
+
+    @Test
+    public void backoffTest() {
+        FakePool fake = new FakePool(Toolkit.HISTORY_TABLE).lockHeld(300);
+        MigrationResult result = TestConfigs.migrate(toolkit(fake, StandardLockStrategy.BACKOFF, Duration.ofSeconds(10)));
+        Assertions.assertEquals("1", result.version);
+        long attempts = count(fake, "SELECT pg_try_advisory_lock");
+        // 50 ms doubled with the jitter of the half
+        Assertions.assertTrue(attempts > 1 && attempts < 10, () -> "Attempts: " + attempts);
+    }
+
+    @Test
+    public void backoffTimeoutTest() {
+        FakePool fake = new FakePool(Toolkit.HISTORY_TABLE).lockHeld(60_000);
+        Toolkit toolkit = toolkit(fake, StandardLockStrategy.BACKOFF, Duration.ofMillis(300));
+        long start = System.nanoTime();
+        Assertions.assertThrows(IllegalStateException.class, () -> TestConfigs.migrate(toolkit));
+        Assertions.assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 5000);
+        Assertions.assertEquals(0, fake.historySize());
+    }
+}
@@ -0,0 +1,151 @@
+package vn.com.acbs.digital.migration.toolkit.database;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import vn.com.acbs.digital.migration.toolkit.Toolkit;
+import vn.com.acbs.digital.migration.toolkit.ToolkitConfig;
+import vn.com.acbs.digital.migration.toolkit.models.MigrationResult;
+import vn.com.acbs.digital.migration.toolkit.models.Resource;
+import vn.com.acbs.digital.migration.toolkit.models.VersionedMigration;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Lock and statement timeouts of the migration scripts measured with the fake pool.
+ */
+public class LockTimeoutTest {
+
+    private static VersionedMigration versioned(int version, String script, Long lockTimeout, boolean transactional) {
+        Resource r = TestConfigs.resource(version, script);
+        r.lockTimeout = lockTimeout;
+        r.transactional = transactional;
+        return new VersionedMigration(r);
+    }
+
+    private static ToolkitConfig.ToolkitConfigBuilder builder(VersionedMigration... migrations) {
+        return TestConfigs.builder(List.of(migrations));
+    }
+
+    @Test
+    public void timeoutsTest() {
+        FakePool fake = new FakePool(Toolkit.HISTORY_TABLE);
+        Toolkit toolkit = TestConfigs.toolkit(fake, builder(
+                versioned(1, TestConfigs.SCRIPT, null, true),
+                versioned(2, TestConfigs.SCRIPT, 100L, true),
+                versioned(3, "db/budget/V2__index.sql", null, false))
+                .lockTimeout(Duration.ofSeconds(2))
+                .statementTimeout(Duration.ofMinutes(1)));
+
+        TestConfigs.migrate(toolkit);
+        Assertions.assertEquals(List.of(
+                "SET LOCAL lock_timeout = 2000;\nSET LOCAL statement_timeout = 60000",
+                "SET LOCAL lock_timeout = 100;\nSET LOCAL statement_timeout = 60000",
+                "SET lock_timeout = 2000;\nSET statement_timeout = 60000",
+                "RESET lock_timeout;\nRESET statement_timeout"), fake.settings());
+    }
+
+    @Test
+    public void noTimeoutsTest() {
+        FakePool fake = new FakePool(Toolkit.HISTORY_TABLE);
+        TestConfigs.migrate(TestConfigs.toolkit(fake, builder(versioned(1, TestConfigs.SCRIPT, null, true))));
+        Assertions.assertTrue(fake.settings().isEmpty(), () -> "Settings: " + fake.settings());
+    }
+
+    @Test
+    public void groupTimeoutsTest() {
+        FakePool fake = new FakePool(Toolkit.HISTORY_TABLE);
+        Toolkit toolkit = TestConfigs.toolkit(fake, builder(
+                versioned(1, TestConfigs.SCRIPT, 100L, true),
+                versioned(2, TestConfigs.SCRIPT, null, true),
+                versioned(3, TestConfigs.SCRIPT, null, true))
+                .groupCommitSize(10));
+
+        MigrationResult result = TestConfigs.migrate(toolkit);
+        Assertions.assertEquals("3", result.version);
+        Assertions.assertEquals(3, fake.historySize());
+        // the override ends with the own transaction, the next scripts run without it
+        List<String> transactions = fake.trace().stream()
+                .filter(e -> e.kind == FakePool.Kind.BEGIN || e.kind == FakePool.Kind.COMMIT
+                        || fake.settings().contains(e.sql))
+                .map(e -> e.sql != null ? e.sql : e.kind.name())
+                .collect(Collectors.toList());
+        Assertions.assertEquals(List.of("BEGIN", "SET LOCAL lock_timeout = 100", "COMMIT", "BEGIN", "COMMIT"), transactions);
+    }
+
+    @Test
+    public void groupDefaultTimeoutsTest() {
+        FakePool fake = new FakePool(Toolkit.HISTORY_TABLE);
+        Toolkit toolkit = TestConfigs.toolkit(fake, builder(
+                versioned(1, TestConfigs.SCRIPT, 100L, true),
+                versioned(2, TestConfigs.SCRIPT, null, true),
+                versioned(3, TestConfigs.SCRIPT, null, true))
+                .groupCommitSize(10)
+                .lockTimeout(Duration.ofSeconds(2)));
+
+        TestConfigs.migrate(toolkit);
+        Assertions.assertEquals(List.of(
+                "SET LOCAL lock_timeout = 100",
+                "SET LOCAL lock_timeout = 2000",
+                "SET LOCAL lock_timeout = 2000"), fake.settings());
+        Assertions.assertEquals(2, fake.count(FakePool.Kind.COMMIT), () -> "Trace: " + fake.trace());
+    }
+
+    @Test
+    public void retryTest() {
+        FakePool fake = new FakePool(Toolkit.HISTORY_TABLE)
+                .lockTimeoutOn(sql -> sql.startsWith("CREATE TABLE budget_test"), 2);
+        Toolkit toolkit = TestConfigs.toolkit(fake, builder(versioned(1, TestConfigs.SCRIPT, null, true))
+                .lockTimeout(Duration.ofMillis(100))
+                .lockRetryDeadline(Duration.ofSeconds(10)));
+
+        MigrationResult result = TestConfigs.migrate(toolkit);
+        Assertions.assertEquals("1", result.version);
+        Assertions.assertEquals(1, fake.historySize());
+        Assertions.assertEquals(2, fake.count(FakePool.Kind.ROLLBACK), () -> "Trace: " + fake.trace());
+        Assertions.assertEquals(1, fake.count(FakePool.Kind.COMMIT));
+        Assertions.assertEquals(1, fake.count(FakePool.Kind.CONNECT));
+    }
+
+    @Test
+    public void retryDeadlineTest() {
+        FakePool fake = new FakePool(Toolkit.HISTORY_TABLE)
+                .lockTimeoutOn(sql -> sql.startsWith("CREATE TABLE budget_test"), Integer.MAX_VALUE);
+        Toolkit toolkit = TestConfigs.toolkit(fake, builder(versioned(1, TestConfigs.SCRIPT, null, true))
+                .lockRetryDeadline(Duration.ofMillis(300)));
+
+        long start = System.nanoTime();
+        Assertions.assertThrows(IllegalStateException.class, () -> TestConfigs.migrate(toolkit));
+        Assertions.assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 5000);
+        Assertions.assertTrue(fake.count(FakePool.Kind.ROLLBACK) > 1, () -> "Trace: " + fake.trace());
+        Assertions.assertEquals(0, fake.historySize());
+    }
+
+    @Test
+    public void autocommitNoRetryTest() {
+        FakePool fake = new FakePool(Toolkit.HISTORY_TABLE)
+                .lockTimeoutOn(sql -> sql.startsWith("CREATE INDEX CONCURRENTLY budget_test_name_idx"), 1);
+        Toolkit toolkit = TestConfigs.toolkit(fake, builder(
+                versioned(1, TestConfigs.SCRIPT, null, true),
+                versioned(2, "db/budget/V2__index.sql", null, false))
+                .lockTimeout(Duration.ofMillis(100))
+                .lockRetryDeadline(Duration.ofSeconds(10)));
+
+        // the first index is committed, the script does not run again
+        Assertions.assertThrows(IllegalStateException.class, () -> TestConfigs.migrate(toolkit));
+        Assertions.assertEquals(1, fake.trace().stream()
+                .filter(e -> e.sql != null && e.sql.startsWith("CREATE INDEX CONCURRENTLY budget_test_id_idx")).count());
+        Assertions.assertEquals(1, fake.historySize());
+    }
+
+    @Test
+    public void noRetryTest() {
+        FakePool fake = new FakePool(Toolkit.HISTORY_TABLE)
+                .lockTimeoutOn(sql -> sql.startsWith("CREATE TABLE budget_test"), 1);
+        Toolkit toolkit = TestConfigs.toolkit(fake, builder(versioned(1, TestConfigs.SCRIPT, null, true)));
+
+        Assertions.assertThrows(IllegalStateException.class, () -> TestConfigs.migrate(toolkit));
+        Assertions.assertEquals(1, fake.count(FakePool.Kind.ROLLBACK));
+    }
+}
@@ -0,0 +1,64 @@
+package vn.com.acbs.digital.migration.toolkit.database;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import vn.com.acbs.digital.migration.toolkit.Toolkit;
+import vn.com.acbs.digital.migration.toolkit.metrics.MicrometerMigrationMetrics;
+import vn.com.acbs.digital.migration.toolkit.metrics.MigrationMetrics;
+
+public class MigrationMetricsTest {
+
+    private static final String PREFIX = MicrometerMigrationMetrics.PREFIX;
+
+    private static final Tags VERSIONED = Tags.of("table", Toolkit.HISTORY_TABLE, "type", MigrationMetrics.VERSIONED);
+
+    private static Toolkit toolkit(FakePool fake, MeterRegistry registry, int scripts) {
+        return TestConfigs.toolkit(fake, TestConfigs.builder(scripts)
+                .metrics(new MicrometerMigrationMetrics(registry, Toolkit.HISTORY_TABLE)));
+    }
+
+    @Test
+    public void migrationTest() {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        FakePool fake = new FakePool(Toolkit.HISTORY_TABLE);
+        TestConfigs.migrate(toolkit(fake, registry, 3));
+
+        Assertions.assertEquals(3, registry.get(PREFIX + "scripts.applied").tags(VERSIONED).counter().count());
+        Assertions.assertEquals(3, registry.get(PREFIX + "script.execution").tags(VERSIONED).timer().count());
+        Assertions.assertEquals(0, registry.get(PREFIX + "scripts.pending").tags(VERSIONED).gauge().value());
+        Assertions.assertEquals(3, registry.get(PREFIX + "commit").timer().count());
+        Assertions.assertEquals(1, registry.get(PREFIX + "lock.wait").timer().count());
+        Assertions.assertEquals(2, registry.get(PREFIX + "history.lookup").timer().count());
+        Assertions.assertEquals(1, registry.get(PREFIX + "schema.version").tag("version", "3").gauge().value());
+
+        // the next start only skips the applied scripts
+        TestConfigs.migrate(toolkit(fake, registry, 5));
+        Assertions.assertEquals(5, registry.get(PREFIX + "scripts.applied").tags(VERSIONED).counter().count());
+        Assertions.assertEquals(3, registry.get(PREFIX + "scripts.skipped").tags(VERSIONED).counter().count());
+        Assertions.assertEquals(1, registry.get(PREFIX + "schema.version").tag("version", "5").gauge().value());
+        Assertions.assertNull(registry.find(PREFIX + "schema.version").tag("version", "3").gauge());
+    }
+
+    @Test
+    public void failedTest() {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        FakePool fake = new FakePool(Toolkit.HISTORY_TABLE)
+                .failOn(sql -> sql.startsWith("CREATE TABLE budget_test"));
+
+        Assertions.assertThrows(IllegalStateException.class,
+                () -> TestConfigs.migrate(toolkit(fake, registry, 2)));
+        Assertions.assertEquals(1, registry.get(PREFIX + "scripts.failed").tags(VERSIONED).counter().count());
+        Assertions.assertEquals(2, registry.get(PREFIX + "scripts.pending").tags(VERSIONED).gauge().value());
+        Assertions.assertNull(registry.find(PREFIX + "scripts.applied").counter());
+    }
+
+    @Test
+    public void cleanTest() {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        toolkit(new FakePool(Toolkit.HISTORY_TABLE), registry, 1).cleanAsync().await().atMost(TestConfigs.TIMEOUT);
+        Assertions.assertEquals(1, registry.get(PREFIX + "clean").timer().count());
+    }
+}
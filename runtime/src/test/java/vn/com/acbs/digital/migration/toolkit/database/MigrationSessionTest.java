@@ -0,0 +1,88 @@
+package vn.com.acbs.digital.migration.toolkit.database;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import vn.com.acbs.digital.migration.toolkit.Toolkit;
+import vn.com.acbs.digital.migration.toolkit.models.MigrationResult;
+import vn.com.acbs.digital.migration.toolkit.models.VersionedMigration;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * The migration run on one session measured with the fake pool.
+ */
+public class MigrationSessionTest {
+
+    private static Set<Long> connections(FakePool fake) {
+        return fake.trace().stream().map(e -> e.connection).collect(Collectors.toSet());
+    }
+
+    @Test
+    public void nonBlockingTest() throws Exception {
+        FakePool fake = new FakePool(Toolkit.HISTORY_TABLE).latency(20);
+        Toolkit toolkit = TestConfigs.toolkit(fake, TestConfigs.builder(3));
+
+        // the subscriber is not parked while the round trips are in flight
+        CompletableFuture<MigrationResult> run = toolkit.migrationAsync().subscribeAsCompletionStage().toCompletableFuture();
+        Assertions.assertFalse(run.isDone());
+
+        MigrationResult result = run.get(TestConfigs.TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+        Assertions.assertEquals("3", result.version);
+        Assertions.assertEquals(3, fake.historySize());
+        Assertions.assertEquals(Set.of(1L), connections(fake), () -> "Trace: " + fake.trace());
+    }
+
+    @Test
+    public void pinnedSessionTest() {
+        FakePool fake = new FakePool(Toolkit.HISTORY_TABLE);
+        TestConfigs.migrate(TestConfigs.toolkit(fake, TestConfigs.builder(5)));
+
+        // lock, scripts, history rows and unlock on one connection released at the end
+        List<FakePool.Event> trace = fake.trace();
+        Assertions.assertEquals(Set.of(1L), connections(fake), () -> "Trace: " + trace);
+        Assertions.assertEquals(FakePool.Kind.CONNECT, trace.get(0).kind);
+        Assertions.assertEquals(FakePool.Kind.CLOSE, trace.get(trace.size() - 1).kind);
+        Assertions.assertTrue(trace.get(trace.size() - 2).sql.startsWith("SELECT pg_advisory_unlock"), () -> "Trace: " + trace);
+        Assertions.assertEquals(5, fake.count(FakePool.Kind.BATCH));
+    }
+
+    @Test
+    public void releasedOnFailureTest() {
+        FakePool fake = new FakePool(Toolkit.HISTORY_TABLE)
+                .failOn(sql -> sql.startsWith("CREATE TABLE budget_test"));
+        Toolkit toolkit = TestConfigs.toolkit(fake, TestConfigs.builder(2));
+
+        Assertions.assertThrows(IllegalStateException.class, () -> TestConfigs.migrate(toolkit));
+        List<FakePool.Event> trace = fake.trace();
+        Assertions.assertEquals(1, fake.count(FakePool.Kind.CONNECT));
+        Assertions.assertEquals(FakePool.Kind.CLOSE, trace.get(trace.size() - 1).kind);
+        Assertions.assertTrue(trace.get(trace.size() - 2).sql.startsWith("SELECT pg_advisory_unlock"), () -> "Trace: " + trace);
+    }
+
+    @Test
+    public void pipelinedScriptTest() {
+        FakePool fake = new FakePool(Toolkit.HISTORY_TABLE).latency(20);
+        TestConfigs.migrate(TestConfigs.toolkit(fake, TestConfigs.builder(
+                List.of(new VersionedMigration(TestConfigs.resource(1, "db/test/stream.sql"))))));
+
+        // the statements of the script are sent without waiting for the previous replies
+        Assertions.assertEquals(3, fake.statements().size());
+        Assertions.assertTrue(fake.maxInFlight() > 1, () -> "Max in flight: " + fake.maxInFlight());
+        Assertions.assertEquals(Set.of(1L), connections(fake));
+    }
+
+    @Test
+    public void notPipelinedScriptTest() {
+        FakePool fake = new FakePool(Toolkit.HISTORY_TABLE).latency(20);
+        TestConfigs.migrate(TestConfigs.toolkit(fake, TestConfigs.builder(
+                List.of(new VersionedMigration(TestConfigs.resource(1, "db/test/stream.sql"))))
+                .pipeliningLimit(1)));
+
+        Assertions.assertEquals(3, fake.statements().size());
+        Assertions.assertEquals(1, fake.maxInFlight());
+    }
+}
@@ -0,0 +1,74 @@
+package vn.com.acbs.digital.migration.toolkit.database;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import vn.com.acbs.digital.migration.toolkit.Toolkit;
+import vn.com.acbs.digital.migration.toolkit.models.MigrationResult;
+import vn.com.acbs.digital.migration.toolkit.models.Resource;
+import vn.com.acbs.digital.migration.toolkit.models.VersionedMigration;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Migrations outside of the transaction measured with the fake pool.
+ */
+public class NonTransactionalMigrationTest {
+
+    private static final String INDEX = "db/budget/V2__index.sql";
+
+    private static List<VersionedMigration> versioned(int count, int index) {
+        List<VersionedMigration> result = TestConfigs.versioned(count);
+        Resource r = TestConfigs.resource(index, INDEX);
+        r.transactional = false;
+        result.set(index - 1, new VersionedMigration(r));
+        return result;
+    }
+
+    private static Toolkit toolkit(FakePool fake, List<VersionedMigration> migrations) {
+        return TestConfigs.toolkit(fake, TestConfigs.builder(migrations).groupCommitSize(10));
+    }
+
+    @Test
+    public void autocommitTest() {
+        FakePool fake = new FakePool(Toolkit.HISTORY_TABLE);
+        MigrationResult result = TestConfigs.migrate(toolkit(fake, versioned(1, 1)));
+
+        Assertions.assertEquals("1", result.version);
+        Assertions.assertEquals(List.of(INDEX), result.scripts);
+        Assertions.assertEquals(2, fake.statements().size());
+        Assertions.assertEquals(1, fake.historySize());
+        Assertions.assertEquals(0, fake.count(FakePool.Kind.BEGIN), () -> "Trace: " + fake.trace());
+        // the statements are not pipelined
+        Assertions.assertEquals(1, fake.maxInFlight());
+    }
+
+    @Test
+    public void groupBarrierTest() {
+        FakePool fake = new FakePool(Toolkit.HISTORY_TABLE);
+        MigrationResult result = TestConfigs.migrate(toolkit(fake, versioned(5, 3)));
+
+        Assertions.assertEquals("5", result.version);
+        Assertions.assertEquals(5, fake.historySize());
+        // the groups 1-2 and 4-5 are committed around the index script
+        Assertions.assertEquals(2, fake.count(FakePool.Kind.COMMIT), () -> "Trace: " + fake.trace());
+        List<String> statements = fake.statements();
+        Assertions.assertTrue(statements.get(2).startsWith("CREATE INDEX CONCURRENTLY budget_test_id_idx"), statements::toString);
+        Assertions.assertTrue(statements.get(4).startsWith("CREATE TABLE budget_test"), statements::toString);
+    }
+
+    @Test
+    public void failedIndexTest() {
+        FakePool fake = new FakePool(Toolkit.HISTORY_TABLE)
+                .failOn(sql -> sql.startsWith("CREATE INDEX CONCURRENTLY budget_test_name_idx"));
+        Toolkit toolkit = toolkit(fake, versioned(2, 2));
+
+        Assertions.assertThrows(IllegalStateException.class, () -> TestConfigs.migrate(toolkit));
+        Assertions.assertEquals(1, fake.historySize());
+        Assertions.assertEquals(Set.of(), fake.invalidIndexes());
+        Set<String> drops = fake.statements().stream().filter(s -> s.startsWith("DROP INDEX")).collect(Collectors.toSet());
+        Assertions.assertEquals(Set.of("DROP INDEX CONCURRENTLY IF EXISTS public.budget_test_name_idx"), drops);
+        Assertions.assertEquals(fake.count(FakePool.Kind.CONNECT), fake.count(FakePool.Kind.CLOSE));
+    }
+}
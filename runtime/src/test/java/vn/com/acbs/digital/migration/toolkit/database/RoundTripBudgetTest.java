@@ -0,0 +1,180 @@
+package vn.com.acbs.digital.migration.toolkit.database;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import vn.com.acbs.digital.migration.toolkit.Toolkit;
+import vn.com.acbs.digital.migration.toolkit.ToolkitConfig;
+import vn.com.acbs.digital.migration.toolkit.models.MigrationResult;
+import vn.com.acbs.digital.migration.toolkit.models.Resource;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Round trip budgets of the engine measured with the fake pool.
+ */
+public class RoundTripBudgetTest {
+
+    private static Resource repeatable(String description) {
+        Resource r = new Resource();
+        r.description = description;
+        r.script = TestConfigs.SCRIPT;
+        r.checksum = 1L;
+        r.repeatable = true;
+        return r;
+    }
+
+    @Test
+    public void upToDateStartupTest() {
+        FakePool fake = new FakePool(Toolkit.HISTORY_TABLE);
+        Toolkit toolkit = TestConfigs.toolkit(fake, TestConfigs.builder(50));
+        TestConfigs.migrate(toolkit);
+        fake.reset();
+
+        MigrationResult result = TestConfigs.migrate(toolkit);
+        Assertions.assertEquals("50", result.version);
+        Assertions.assertTrue(result.scripts.isEmpty());
+        Assertions.assertEquals(1, fake.roundTrips(), () -> "Trace: " + fake.trace());
+        Assertions.assertEquals(1, fake.count(FakePool.Kind.CONNECT));
+        Assertions.assertEquals(1, fake.count(FakePool.Kind.CLOSE));
+    }
+
+    @Test
+    public void removedRepeatableTest() {
+        FakePool fake = new FakePool(Toolkit.HISTORY_TABLE);
+        TestConfigs.migrate(TestConfigs.toolkit(fake, TestConfigs.builder(5)
+                .repeatableMigrations(List.of(repeatable("view"), repeatable("function")))));
+        Assertions.assertEquals(7, fake.historySize());
+        fake.reset();
+
+        // the history keeps the row of the repeatable migration removed from the plan
+        MigrationResult result = TestConfigs.migrate(TestConfigs.toolkit(fake, TestConfigs.builder(5)
+                .repeatableMigrations(List.of(repeatable("view")))));
+        Assertions.assertTrue(result.scripts.isEmpty());
+        Assertions.assertEquals(1, fake.roundTrips(), () -> "Trace: " + fake.trace());
+    }
+
+    @Test
+    public void groupCommitTest() {
+        groupCommit(10);
+        groupCommit(100);
+    }
+
+    private void groupCommit(int scripts) {
+        FakePool fake = new FakePool(Toolkit.HISTORY_TABLE);
+        Toolkit toolkit = TestConfigs.toolkit(fake, TestConfigs.builder(scripts)
+                .groupCommitSize(scripts));
+
+        MigrationResult result = TestConfigs.migrate(toolkit);
+        Assertions.assertEquals(String.valueOf(scripts), result.version);
+        Assertions.assertEquals(scripts, fake.statements().size());
+        Assertions.assertEquals(scripts, fake.historySize());
+        // state, lock, state, create table, user, begin, history, commit, unlock
+        Assertions.assertTrue(fake.roundTrips() <= scripts + 9, () -> "Round trips: " + fake.roundTrips());
+        Assertions.assertEquals(1, fake.count(FakePool.Kind.BATCH));
+        Assertions.assertEquals(1, fake.count(FakePool.Kind.CONNECT));
+    }
+
+    @Test
+    public void transactionPerScriptTest() {
+        transactionPerScript(10);
+        transactionPerScript(100);
+    }
+
+    private void transactionPerScript(int scripts) {
+        FakePool fake = new FakePool(Toolkit.HISTORY_TABLE);
+        Toolkit toolkit = TestConfigs.toolkit(fake, TestConfigs.builder(scripts));
+
+        TestConfigs.migrate(toolkit);
+        // begin, statement, history and commit for each script
+        Assertions.assertTrue(fake.roundTrips() <= 4L * scripts + 6, () -> "Round trips: " + fake.roundTrips());
+        Assertions.assertEquals(scripts, fake.count(FakePool.Kind.COMMIT));
+    }
+
+    @Test
+    public void pendingOnlyTest() {
+        FakePool fake = new FakePool(Toolkit.HISTORY_TABLE);
+        TestConfigs.migrate(TestConfigs.toolkit(fake, TestConfigs.builder(100)));
+        fake.reset();
+
+        MigrationResult result = TestConfigs.migrate(TestConfigs.toolkit(fake, TestConfigs.builder(105)
+                .groupCommitSize(10)));
+        Assertions.assertEquals("105", result.version);
+        Assertions.assertEquals(5, result.scripts.size());
+        Assertions.assertEquals(5, fake.statements().size());
+        Assertions.assertTrue(fake.roundTrips() <= 5 + 7, () -> "Round trips: " + fake.roundTrips());
+    }
+
+    @Test
+    public void failedGroupTest() {
+        FakePool fake = new FakePool(Toolkit.HISTORY_TABLE)
+                .failOn(sql -> sql.startsWith("CREATE TABLE budget_test"));
+        Toolkit toolkit = TestConfigs.toolkit(fake, TestConfigs.builder(5).groupCommitSize(5));
+
+        Assertions.assertThrows(IllegalStateException.class, () -> TestConfigs.migrate(toolkit));
+        Assertions.assertEquals(0, fake.historySize());
+        Assertions.assertTrue(fake.count(FakePool.Kind.ROLLBACK) >= 2);
+        Assertions.assertEquals(fake.count(FakePool.Kind.CONNECT), fake.count(FakePool.Kind.CLOSE));
+    }
+
+    @Test
+    public void cleanTest() {
+        FakePool fake = new FakePool(Toolkit.HISTORY_TABLE);
+        Toolkit toolkit = TestConfigs.toolkit(fake, TestConfigs.builder(10));
+        TestConfigs.migrate(toolkit);
+        fake.reset();
+
+        toolkit.cleanAsync().await().atMost(TestConfigs.TIMEOUT);
+        Assertions.assertEquals(1, fake.roundTrips(), () -> "Trace: " + fake.trace());
+        Assertions.assertEquals(0, fake.historySize());
+    }
+
+    @Test
+    public void cleanStatementTest() {
+        for (boolean dropSchema : new boolean[]{false, true}) {
+            FakePool fake = new FakePool(Toolkit.HISTORY_TABLE);
+            Toolkit toolkit = TestConfigs.toolkit(fake, TestConfigs.builder(1).cleanDropSchema(dropSchema));
+            TestConfigs.migrate(toolkit);
+            fake.reset();
+
+            toolkit.cleanAsync().await().atMost(TestConfigs.TIMEOUT);
+            List<String> queries = fake.trace().stream()
+                    .filter(e -> e.kind == FakePool.Kind.QUERY)
+                    .map(e -> e.sql)
+                    .collect(Collectors.toList());
+            Assertions.assertEquals(List.of(PostgresDatabase.cleanSchemaSql(dropSchema)), queries);
+            // one catalog snapshot dropped by the function in one statement list
+            String sql = queries.get(0);
+            Assertions.assertTrue(sql.startsWith("CREATE OR REPLACE FUNCTION pg_temp.toolkit_clean()"), sql);
+            Assertions.assertTrue(sql.contains("  FOR r IN "), sql);
+            Assertions.assertTrue(sql.contains("SELECT drop_statement, drop_time FROM pg_temp.toolkit_clean();"), sql);
+            Assertions.assertTrue(sql.endsWith("DROP FUNCTION pg_temp.toolkit_clean()"), sql);
+            Assertions.assertEquals(dropSchema, sql.contains("format('DROP SCHEMA %I CASCADE', s)"), sql);
+        }
+    }
+
+    @Test
+    public void testDataTest() {
+        FakePool fake = new FakePool(Toolkit.HISTORY_TABLE).table("public.budget", "id", "name");
+        Toolkit toolkit = TestConfigs.toolkit(fake, ToolkitConfig.builder()
+                .afterMigrationScripts(List.of("db/budget/public.budget.csv"))
+                .testDataBatchSize(3));
+
+        MigrationResult result = toolkit.testDataAsync().await().atMost(TestConfigs.TIMEOUT);
+        Assertions.assertEquals(List.of("db/budget/public.budget.csv"), result.scripts);
+        // begin, columns, 10 records in batches of 3, commit
+        Assertions.assertEquals(4, fake.count(FakePool.Kind.BATCH));
+        Assertions.assertEquals(7, fake.roundTrips(), () -> "Trace: " + fake.trace());
+    }
+
+    @Test
+    public void pipeliningTest() {
+        FakePool fake = new FakePool(Toolkit.HISTORY_TABLE).latency(20);
+        Toolkit toolkit = TestConfigs.toolkit(fake, ToolkitConfig.builder()
+                .afterMigrationScripts(List.of("db/test/stream.sql")));
+
+        toolkit.testDataAsync().await().atMost(TestConfigs.TIMEOUT);
+        Assertions.assertEquals(3, fake.statements().size());
+        Assertions.assertTrue(fake.maxInFlight() > 1, () -> "Max in flight: " + fake.maxInFlight());
+    }
+}
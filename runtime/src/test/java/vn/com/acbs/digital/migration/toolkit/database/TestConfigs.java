@@ -0,0 +1,70 @@
+package vn.com.acbs.digital.migration.toolkit.database;
+
+import vn.com.acbs.digital.migration.toolkit.Toolkit;
+import vn.com.acbs.digital.migration.toolkit.ToolkitConfig;
+import vn.com.acbs.digital.migration.toolkit.models.MigrationResult;
+import vn.com.acbs.digital.migration.toolkit.models.Resource;
+import vn.com.acbs.digital.migration.toolkit.models.VersionedMigration;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The migrations and the toolkits of the tests with the fake pool.
+ */
+public final class TestConfigs {
+
+    public static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    public static final String SCRIPT = "db/budget/V1__budget.sql";
+
+    private TestConfigs() {
+    }
+
+    /**
+     * Creates the versioned migration of the script, the version is also the checksum.
+     *
+     * @param version the version
+     * @param script  the script
+     * @return the migration resource
+     */
+    public static Resource resource(int version, String script) {
+        Resource r = new Resource();
+        r.version = String.valueOf(version);
+        r.description = "migration " + version;
+        r.script = script;
+        r.checksum = (long) version;
+        return r;
+    }
+
+    /**
+     * Creates the versioned migrations from 1 to the count of the budget script.
+     *
+     * @param count the number of the migrations
+     * @return the migrations
+     */
+    public static List<VersionedMigration> versioned(int count) {
+        List<VersionedMigration> result = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            result.add(new VersionedMigration(resource(i, SCRIPT)));
+        }
+        return result;
+    }
+
+    public static ToolkitConfig.ToolkitConfigBuilder builder(List<VersionedMigration> migrations) {
+        return ToolkitConfig.builder().table(Toolkit.HISTORY_TABLE).versionedMigrations(migrations);
+    }
+
+    public static ToolkitConfig.ToolkitConfigBuilder builder(int count) {
+        return builder(versioned(count));
+    }
+
+    public static Toolkit toolkit(FakePool fake, ToolkitConfig.ToolkitConfigBuilder builder) {
+        return new Toolkit(fake.pool(), builder.table(Toolkit.HISTORY_TABLE).build());
+    }
+
+    public static MigrationResult migrate(Toolkit toolkit) {
+        return toolkit.migrationAsync().await().atMost(TIMEOUT);
+    }
+}
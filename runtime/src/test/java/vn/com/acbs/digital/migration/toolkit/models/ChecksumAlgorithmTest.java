@@ -0,0 +1,52 @@
+/*
+ * Copyright 2020 lorislab.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vn.com.acbs.digital.migration.toolkit.models;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class ChecksumAlgorithmTest {
+
+    private static final byte[] CHECK = "123456789".getBytes(StandardCharsets.US_ASCII);
+
+    @Test
+    public void checksumTest() {
+        Assertions.assertEquals(0xCBF43926L, ChecksumAlgorithm.CRC32.checksum(CHECK));
+        Assertions.assertEquals(0xE3069283L, ChecksumAlgorithm.CRC32C.checksum(CHECK));
+        Assertions.assertEquals(ResourceLoader.checksum(CHECK), ChecksumAlgorithm.CRC32.checksum(CHECK));
+        Assertions.assertEquals(0, ChecksumAlgorithm.CRC32C.checksum(new byte[0]));
+    }
+
+    @Test
+    public void checksumBufferTest() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(CHECK.length).put(CHECK).flip();
+        Assertions.assertEquals(0xE3069283L, ChecksumAlgorithm.CRC32C.checksum(buffer));
+        Assertions.assertEquals(0, buffer.position());
+    }
+
+    @Test
+    public void typeTest() {
+        Assertions.assertEquals("SQL", ChecksumAlgorithm.CRC32.type());
+        for (ChecksumAlgorithm algorithm : ChecksumAlgorithm.values()) {
+            Assertions.assertEquals(algorithm, ChecksumAlgorithm.ofType(algorithm.type()));
+        }
+        Assertions.assertEquals(ChecksumAlgorithm.CRC32, ChecksumAlgorithm.ofType(null));
+        Assertions.assertEquals(ChecksumAlgorithm.CRC32, ChecksumAlgorithm.ofType("UNKNOWN"));
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2020 lorislab.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vn.com.acbs.digital.migration.toolkit.models;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+public class CsvReaderTest {
+
+    @Test
+    public void readTest() {
+        String csv = "id,name,note\r\n" +
+                "1,\"Nguyen, Van A\",\"say \"\"hi\"\"\"\n" +
+                "\n" +
+                "2,,\"\"\n" +
+                "3,\"multi\nline\",x";
+        List<String[]> records = new ArrayList<>();
+        new CsvReader(new StringReader(csv), ',').forEachRemaining(records::add);
+
+        Assertions.assertEquals(4, records.size());
+        Assertions.assertArrayEquals(new String[]{"id", "name", "note"}, records.get(0));
+        Assertions.assertArrayEquals(new String[]{"1", "Nguyen, Van A", "say \"hi\""}, records.get(1));
+        Assertions.assertArrayEquals(new String[]{"2", null, ""}, records.get(2));
+        Assertions.assertArrayEquals(new String[]{"3", "multi\nline", "x"}, records.get(3));
+    }
+
+    @Test
+    public void dataFileTest() {
+        Assertions.assertTrue(CsvReader.isDataFile("data/users.csv"));
+        Assertions.assertFalse(CsvReader.isDataFile("data/users.sql"));
+        Assertions.assertEquals('\t', CsvReader.delimiter("data/users.tsv"));
+        Assertions.assertEquals("public.users", CsvReader.table("data/public.users.csv"));
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2020 lorislab.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vn.com.acbs.digital.migration.toolkit.models;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class MigrationPlanTest {
+
+    private static VersionedMigration versioned(String script) {
+        return new VersionedMigration(ResourceLoader.createFrom(script));
+    }
+
+    private static List<String> versions(List<VersionedMigration> migrations) {
+        return migrations.stream().map(v -> v.value).collect(Collectors.toList());
+    }
+
+    private final MigrationPlan plan = MigrationPlan.of(
+            Arrays.asList(versioned("V3__C.sql"), versioned("V1__A.sql"), versioned("V2.1__B.sql"), versioned("V10__D.sql")),
+            Arrays.asList(ResourceLoader.createFrom("R__View.sql"), ResourceLoader.createFrom("R__Function.sql")));
+
+    @Test
+    public void pendingTest() {
+        Assertions.assertEquals(Arrays.asList("1", "2.1", "3", "10"), versions(plan.pending(null)));
+        Assertions.assertEquals(Arrays.asList("3", "10"), versions(plan.pending("2.1")));
+        Assertions.assertEquals(Arrays.asList("3", "10"), versions(plan.pending("2.5")));
+        Assertions.assertEquals(Arrays.asList("1", "2.1", "3", "10"), versions(plan.pending("0")));
+        Assertions.assertTrue(plan.pending("10").isEmpty());
+        Assertions.assertTrue(plan.pending("20261018120000").isEmpty());
+        Assertions.assertEquals("10", plan.getLatestVersion().value);
+    }
+
+    @Test
+    public void repeatableTest() {
+        Assertions.assertEquals("R__View.sql", plan.repeatable("View").script);
+        Assertions.assertNull(plan.repeatable("Table"));
+        Assertions.assertEquals("Function", plan.getRepeatable().get(0).description);
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> plan.getRepeatable().clear());
+    }
+
+    @Test
+    public void baselineTest() {
+        Assertions.assertNull(plan.getBaseline());
+
+        MigrationPlan baseline = MigrationPlan.of(plan.getVersioned(), plan.getRepeatable(),
+                Arrays.asList(versioned("B2.1__Baseline.sql"), versioned("B1__Baseline.sql")));
+        Assertions.assertEquals("2.1", baseline.getBaseline().value);
+
+        // the covered migrations end with the version of the baseline history row
+        Migration row = new Migration();
+        row.version = baseline.getBaseline().value;
+        Assertions.assertEquals(Arrays.asList("1", "2.1"), versions(baseline.baselineCovered(row)));
+    }
+
+    @Test
+    public void emptyTest() {
+        MigrationPlan empty = MigrationPlan.of(null, null);
+        Assertions.assertTrue(empty.isEmpty());
+        Assertions.assertNull(empty.getLatestVersion());
+        Assertions.assertTrue(empty.pending("1").isEmpty());
+    }
+}
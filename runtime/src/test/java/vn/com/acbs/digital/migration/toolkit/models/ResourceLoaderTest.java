@@ -20,6 +20,10 @@ import org.junit.jupiter.api.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
 public class ResourceLoaderTest {
 
     private static final Logger log = LoggerFactory.getLogger(ResourceLoaderTest.class);
@@ -59,4 +63,60 @@ public class ResourceLoaderTest {
             });
         }
     }
+
+    @Test
+    public void baselineTest() {
+        Resource baseline = ResourceLoader.createFrom("db/migration/B900__Baseline.sql");
+        Assertions.assertTrue(baseline.baseline);
+        Assertions.assertFalse(baseline.repeatable);
+        Assertions.assertEquals("900", baseline.version);
+
+        Resource versioned = ResourceLoader.createFrom("db/migration/V900__Last.sql");
+        ResourceLoader.validateResources(Arrays.asList(versioned, baseline));
+        Assertions.assertThrows(IllegalStateException.class, () -> ResourceLoader.validateResources(Arrays.asList(baseline,
+                ResourceLoader.createFrom("db/migration/V899__Last.sql"))));
+        Assertions.assertThrows(IllegalStateException.class, () -> ResourceLoader.validateResources(Arrays.asList(versioned, baseline,
+                ResourceLoader.createFrom("db/migration/B900__Other.sql"))));
+    }
+
+    @Test
+    public void repeatableDigestTest() {
+        Resource b = ResourceLoader.createFrom("R__b.sql");
+        b.checksum = 2L;
+        Resource a = ResourceLoader.createFrom("R__a.sql");
+        a.checksum = 1L;
+        // same value as md5(string_agg(description || ':' || checksum, E'\n' ORDER BY description))
+        Assertions.assertEquals("40ef66c6aa4549df34946c4d44c0ce6a", ResourceLoader.repeatableDigest(Arrays.asList(b, a)));
+        Assertions.assertNull(ResourceLoader.repeatableDigest(Collections.emptyList()));
+    }
+
+    @Test
+    public void directivesTest() {
+        byte[] content = ("\n-- online index\n--   toolkit:transaction = false\n"
+                + "CREATE INDEX CONCURRENTLY idx ON t (id);\n-- toolkit:unknown=1\n").getBytes(StandardCharsets.UTF_8);
+        Resource resource = ResourceLoader.createFrom("V1__index.sql", content);
+        Assertions.assertFalse(resource.transactional);
+        Assertions.assertEquals(Collections.singletonMap("transaction", "false"), ResourceLoader.directives(content));
+
+        Assertions.assertTrue(ResourceLoader.createFrom("V1__index.sql", "SELECT 1;".getBytes(StandardCharsets.UTF_8)).transactional);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ResourceLoader.createFrom("V1__index.sql",
+                "-- toolkit:transaction=no".getBytes(StandardCharsets.UTF_8)));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ResourceLoader.createFrom("V1__index.sql",
+                "-- toolkit:isolation=serializable".getBytes(StandardCharsets.UTF_8)));
+
+        Resource timeouts = ResourceLoader.createFrom("V1__alter.sql",
+                "-- toolkit:lock-timeout=2s\n-- toolkit:statement-timeout=5min\nALTER TABLE t ADD c INT;".getBytes(StandardCharsets.UTF_8));
+        Assertions.assertEquals(2000L, timeouts.lockTimeout);
+        Assertions.assertEquals(300000L, timeouts.statementTimeout);
+        Assertions.assertEquals(250L, ResourceLoader.createFrom("V1__alter.sql",
+                "-- toolkit:lock-timeout=250".getBytes(StandardCharsets.UTF_8)).lockTimeout);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ResourceLoader.createFrom("V1__alter.sql",
+                "-- toolkit:lock-timeout=2 days".getBytes(StandardCharsets.UTF_8)));
+
+        // the autocommit script is not retried on the lock timeout
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ResourceLoader.createFrom("V1__index.sql",
+                "-- toolkit:transaction=false\n-- toolkit:lock-timeout=2s".getBytes(StandardCharsets.UTF_8)));
+        Assertions.assertEquals(1000L, ResourceLoader.createFrom("V1__index.sql",
+                "-- toolkit:transaction=false\n-- toolkit:statement-timeout=1s".getBytes(StandardCharsets.UTF_8)).statementTimeout);
+    }
 }
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2020 lorislab.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vn.com.acbs.digital.migration.toolkit.models;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class ScriptBundleTest {
+
+    @Test
+    public void writeReadTest() {
+        Map<String, byte[]> scripts = new HashMap<>();
+        scripts.put("db/migration/V1__init.sql", "CREATE TABLE a (id INT);".getBytes(StandardCharsets.UTF_8));
+        scripts.put("db/migration/V2__data.sql", "INSERT INTO a VALUES (1); -- Đã xong".getBytes(StandardCharsets.UTF_8));
+        scripts.put("db/migration/R__view.sql", new byte[0]);
+
+        for (boolean compress : new boolean[]{false, true}) {
+            ScriptBundle bundle = ScriptBundle.read(ByteBuffer.wrap(ScriptBundle.write(scripts, compress)));
+            Assertions.assertEquals(3, bundle.size());
+            for (Map.Entry<String, byte[]> e : scripts.entrySet()) {
+                Assertions.assertTrue(bundle.contains(e.getKey()));
+                Assertions.assertEquals(ByteBuffer.wrap(e.getValue()), bundle.content("/" + e.getKey()));
+            }
+            Assertions.assertNull(bundle.content("db/migration/V3__missing.sql"));
+        }
+    }
+
+    @Test
+    public void positionTest() {
+        Map<String, byte[]> scripts = new LinkedHashMap<>();
+        scripts.put("db/migration/V2__data.sql", "INSERT INTO a VALUES (1);".getBytes(StandardCharsets.UTF_8));
+        scripts.put("db/migration/V1__init.sql", "CREATE TABLE a (id INT);".getBytes(StandardCharsets.UTF_8));
+
+        ScriptBundle bundle = ScriptBundle.read(ByteBuffer.wrap(ScriptBundle.write(scripts, false)));
+        Assertions.assertEquals(bundle.content("db/migration/V2__data.sql"), bundle.content(0));
+        Assertions.assertEquals(bundle.content("db/migration/V1__init.sql"), bundle.content(1));
+        Assertions.assertNull(bundle.content(2));
+        Assertions.assertNull(bundle.content(-1));
+    }
+}
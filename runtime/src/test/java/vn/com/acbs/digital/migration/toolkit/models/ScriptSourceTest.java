@@ -0,0 +1,53 @@
+/*
+ * Copyright 2020 lorislab.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vn.com.acbs.digital.migration.toolkit.models;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Iterator;
+
+public class ScriptSourceTest {
+
+    @Test
+    public void streamTest() {
+        byte[] data = ResourceLoader.loadResourceContent("db/test/stream.sql");
+        try (ScriptSource source = ScriptSource.open("db/test/stream.sql", ChecksumAlgorithm.CRC32)) {
+            Assertions.assertNotNull(source);
+            Assertions.assertEquals(data.length, source.getSize());
+            Iterator<SqlStatement> it = source.statements();
+            int count = 0;
+            while (it.hasNext()) {
+                Assertions.assertNotNull(it.next().sql);
+                count++;
+            }
+            Assertions.assertEquals(3, count);
+            Assertions.assertEquals(3, source.getStatements());
+            Assertions.assertEquals(data.length, source.getBytes());
+            Assertions.assertEquals(ResourceLoader.checksum(data), source.getChecksum());
+        }
+        Assertions.assertNull(ScriptSource.open("db/test/missing.sql", ChecksumAlgorithm.CRC32));
+    }
+
+    @Test
+    public void checksumAlgorithmTest() {
+        byte[] data = ResourceLoader.loadResourceContent("db/test/stream.sql");
+        try (ScriptSource source = ScriptSource.open("db/test/stream.sql", ChecksumAlgorithm.CRC32C)) {
+            source.statements().forEachRemaining(s -> {});
+            Assertions.assertEquals(ChecksumAlgorithm.CRC32C.checksum(data), source.getChecksum());
+        }
+    }
+}
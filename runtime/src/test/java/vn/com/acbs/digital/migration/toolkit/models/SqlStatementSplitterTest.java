@@ -0,0 +1,120 @@
+/*
+ * Copyright 2020 lorislab.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package vn.com.acbs.digital.migration.toolkit.models;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class SqlStatementSplitterTest {
+
+    @Test
+    public void splitTest() {
+        String sql = "-- header comment\n" +
+                "CREATE TABLE a (id INT, name TEXT DEFAULT 'x;y');\n" +
+                "\n" +
+                "/* block /* nested ; */ comment */\n" +
+                "INSERT INTO a VALUES (1, 'it''s; fine'), (2, E'esc\\'; still');\n" +
+                "CREATE FUNCTION f() RETURNS INT AS $body$\n" +
+                "BEGIN\n" +
+                "  RETURN 1; -- $$ not the end\n" +
+                "END;\n" +
+                "$body$ LANGUAGE plpgsql;\n" +
+                ";;\n" +
+                "SELECT \"semi;colon\", $$a;b$$, $1 FROM a -- trailing ; comment\n";
+
+        List<SqlStatement> statements = SqlStatementSplitter.split(sql);
+
+        Assertions.assertEquals(Arrays.asList(1, 2, 3, 4),
+                statements.stream().map(s -> s.index).collect(Collectors.toList()));
+        Assertions.assertEquals(Arrays.asList(2, 5, 6, 12),
+                statements.stream().map(s -> s.line).collect(Collectors.toList()));
+        Assertions.assertEquals("CREATE TABLE a (id INT, name TEXT DEFAULT 'x;y')", statements.get(0).sql);
+        Assertions.assertEquals("INSERT INTO a VALUES (1, 'it''s; fine'), (2, E'esc\\'; still')", statements.get(1).sql);
+        Assertions.assertTrue(statements.get(2).sql.endsWith("$body$ LANGUAGE plpgsql"));
+        Assertions.assertTrue(statements.get(3).sql.startsWith("SELECT \"semi;colon\", $$a;b$$, $1 FROM a"));
+    }
+
+    @Test
+    public void beginAtomicTest() {
+        String sql = "CREATE FUNCTION f(x INT) RETURNS INT LANGUAGE SQL\n" +
+                "BEGIN ATOMIC\n" +
+                "  INSERT INTO a VALUES (x);\n" +
+                "  SELECT CASE WHEN x > 0 THEN 1 ELSE 0 END;\n" +
+                "end;\n" +
+                "SELECT f(1);";
+
+        List<SqlStatement> statements = SqlStatementSplitter.split(sql);
+
+        Assertions.assertEquals(2, statements.size(), () -> "Statements: " + statements);
+        Assertions.assertTrue(statements.get(0).sql.endsWith("ELSE 0 END;\nend"), statements.get(0).sql);
+        Assertions.assertEquals("SELECT f(1)", statements.get(1).sql);
+    }
+
+    @Test
+    public void ruleActionsTest() {
+        String sql = "CREATE RULE r AS ON INSERT TO a DO ALSO (\n" +
+                "  INSERT INTO b VALUES (new.id);\n" +
+                "  UPDATE c SET n = n + 1\n" +
+                ");\n" +
+                "SELECT 1;";
+
+        List<SqlStatement> statements = SqlStatementSplitter.split(sql);
+
+        Assertions.assertEquals(2, statements.size(), () -> "Statements: " + statements);
+        Assertions.assertTrue(statements.get(0).sql.endsWith("SET n = n + 1\n)"), statements.get(0).sql);
+        Assertions.assertEquals(5, statements.get(1).line);
+    }
+
+    @Test
+    public void escapeStringQuoteTest() {
+        List<SqlStatement> statements = SqlStatementSplitter.split("SELECT E'it''s \\'; still';\nSELECT 1;");
+
+        Assertions.assertEquals(2, statements.size(), () -> "Statements: " + statements);
+        Assertions.assertEquals("SELECT E'it''s \\'; still'", statements.get(0).sql);
+    }
+
+    @Test
+    public void fallbackTest() {
+        // the backslash ends the string only if standard_conforming_strings is off
+        List<SqlStatement> string = SqlStatementSplitter.split("SELECT 1;\nSELECT 'a\\'; b';\nSELECT 2;");
+        Assertions.assertEquals(2, string.size(), () -> "Statements: " + string);
+        Assertions.assertEquals("SELECT 'a\\'; b';\nSELECT 2;", string.get(1).sql);
+
+        // the unbalanced parenthesis
+        List<SqlStatement> parenthesis = SqlStatementSplitter.split("SELECT 1);\nSELECT 2;");
+        Assertions.assertEquals(1, parenthesis.size(), () -> "Statements: " + parenthesis);
+        Assertions.assertEquals("SELECT 1);\nSELECT 2;", parenthesis.get(0).sql);
+    }
+
+    @Test
+    public void stripCommentsTest() {
+        List<SqlStatement> statements = SqlStatementSplitter.split("-- header\n"
+                + "SELECT '--', $$/*$$ /* block /* nested */ */FROM a -- line\nWHERE b;", false);
+
+        Assertions.assertEquals(1, statements.size(), () -> "Statements: " + statements);
+        Assertions.assertEquals("SELECT '--', $$/*$$  FROM a \nWHERE b", statements.get(0).sql);
+    }
+
+    @Test
+    public void emptyTest() {
+        Assertions.assertTrue(SqlStatementSplitter.split(null).isEmpty());
+        Assertions.assertTrue(SqlStatementSplitter.split("  -- only comment\n /* and block */ ;").isEmpty());
+    }
+}
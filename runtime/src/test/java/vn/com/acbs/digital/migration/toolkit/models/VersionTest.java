@@ -36,4 +36,32 @@ public class VersionTest {
 
         Assertions.assertEquals(result, sorted);
     }
+
+    @Test
+    public void timestampTest() {
+        Version timestamp = Version.of("20261018120000");
+        Assertions.assertTrue(timestamp.isBiggerThan(Version.of("20261018115959")));
+        Assertions.assertTrue(timestamp.isLessThan(Version.of("20261018120000.1")));
+        Assertions.assertTrue(timestamp.isBiggerThan(Version.of("2147483647")));
+    }
+
+    @Test
+    public void segmentsTest() {
+        Assertions.assertEquals(Version.of("1.1.1.1.1."), Version.of("1.1.1.1.1"));
+        Assertions.assertEquals(Version.of("1.01"), Version.of("1.1"));
+        Assertions.assertEquals(Version.of("1.01").hashCode(), Version.of("1.1").hashCode());
+        Assertions.assertTrue(Version.of("1.0").isBiggerThan(Version.of("1")));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Version.of("1..2"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Version.of("1.a"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Version.of("99999999999999999999"));
+    }
+
+    @Test
+    public void recordedTest() {
+        // the recorder restores the value only
+        Version version = new Version();
+        version.value = "10.0.1";
+        Assertions.assertEquals(Version.of("10.0.1"), version);
+        Assertions.assertTrue(version.isBiggerThan(Version.of("10.0")));
+    }
 }
@@ -0,0 +1,2 @@
+-- schema of the versions 1 - 3
+CREATE TABLE baseline_test (id INT);
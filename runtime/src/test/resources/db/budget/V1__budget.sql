@@ -0,0 +1,2 @@
+-- round trip budget
+CREATE TABLE budget_test (id INT);
@@ -0,0 +1,4 @@
+-- toolkit:transaction=false
+-- build the indexes without blocking the writes
+CREATE INDEX CONCURRENTLY budget_test_id_idx ON budget_test (id);
+CREATE INDEX CONCURRENTLY budget_test_name_idx ON budget_test (name);
@@ -0,0 +1,4 @@
+-- test data
+CREATE TABLE stream_test (id INT, name TEXT);
+INSERT INTO stream_test VALUES (1, 'a;b');
+INSERT INTO stream_test VALUES (2, $$c;d$$);